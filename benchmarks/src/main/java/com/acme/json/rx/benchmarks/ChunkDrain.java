@@ -0,0 +1,86 @@
+package com.acme.json.rx.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.LockSupport;
+
+import io.helidon.common.http.DataChunk;
+
+/**
+ * Subscriber that drains a publisher of chunks on the calling thread, requesting a fixed number of chunks at a time.
+ */
+final class ChunkDrain implements Flow.Subscriber<DataChunk> {
+
+    private final long batch;
+    private volatile Flow.Subscription subscription;
+    private volatile long outstanding;
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile Thread waiter;
+    private long bytes;
+
+    private ChunkDrain(long batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Drain the given publisher.
+     *
+     * @param publisher publisher
+     * @param batch     number of chunks requested at a time, {@link Long#MAX_VALUE} for unbounded
+     * @return number of bytes received
+     */
+    static long drain(Flow.Publisher<DataChunk> publisher, long batch) {
+        ChunkDrain drain = new ChunkDrain(batch);
+        drain.waiter = Thread.currentThread();
+        publisher.subscribe(drain);
+        return drain.await();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        LockSupport.unpark(waiter);
+    }
+
+    @Override
+    public void onNext(DataChunk chunk) {
+        for (ByteBuffer buffer : chunk.data()) {
+            bytes += buffer.remaining();
+        }
+        chunk.release();
+        if (batch != Long.MAX_VALUE) {
+            outstanding--;
+        }
+        LockSupport.unpark(waiter);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        error = throwable;
+        done = true;
+        LockSupport.unpark(waiter);
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        LockSupport.unpark(waiter);
+    }
+
+    private long await() {
+        while (!done) {
+            Flow.Subscription subscription = this.subscription;
+            if (subscription != null && outstanding == 0) {
+                outstanding = batch;
+                subscription.request(batch);
+            } else {
+                LockSupport.parkNanos(this, 1000);
+            }
+        }
+        if (error != null) {
+            throw new IllegalStateException(error);
+        }
+        return bytes;
+    }
+}
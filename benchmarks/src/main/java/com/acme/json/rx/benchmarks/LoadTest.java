@@ -0,0 +1,318 @@
+package com.acme.json.rx.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.acme.json.rx.Main;
+
+import io.helidon.webserver.WebServer;
+
+/**
+ * HTTP load test of {@link Main#startServer(int)}.
+ * <p>
+ * Starts the server in-process and drives it with concurrent clients, some of which read slowly. For each entity size
+ * it reports requests/sec, bytes/sec, time to first byte, latency percentiles and the heap used per in-flight
+ * response. The retained heap is measured after the timed run: responses are held open after their first buffer, a
+ * single GC is forced and the heap growth is divided by the number of responses held.
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.acme.json.rx.benchmarks.LoadTest \
+ *     clients=32 slow=8 slowDelay=5 requests=500 sizes=2,1000,100000 query=blocking=true
+ * </pre>
+ * Options:
+ * <ul>
+ *     <li>{@code clients}: number of concurrent clients, default {@code 16}</li>
+ *     <li>{@code slow}: number of clients that read slowly, default {@code 0}</li>
+ *     <li>{@code slowDelay}: delay in milliseconds between reads of a slow client, default {@code 5}</li>
+ *     <li>{@code requests}: number of requests per size, default {@code 200}</li>
+ *     <li>{@code held}: number of responses held open to measure the retained heap, default {@code clients}</li>
+ *     <li>{@code sizes}: comma separated list of sizes, default {@code 2,100,10000,1000000}</li>
+ *     <li>{@code path}: request path, default {@code /}</li>
+ *     <li>{@code query}: additional query parameters, e.g. {@code blocking=true&utf8=true}</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "load-test-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final int clients;
+    private final int slow;
+    private final long slowDelay;
+    private final int requests;
+    private final int held;
+    private final String path;
+    private final String query;
+    private final int port;
+
+    private LoadTest(Map<String, String> options, int port) {
+        this.clients = Integer.parseInt(options.getOrDefault("clients", "16"));
+        this.slow = Integer.parseInt(options.getOrDefault("slow", "0"));
+        this.slowDelay = Long.parseLong(options.getOrDefault("slowDelay", "5"));
+        this.requests = Integer.parseInt(options.getOrDefault("requests", "200"));
+        this.held = Integer.parseInt(options.getOrDefault("held", String.valueOf(clients)));
+        this.path = options.getOrDefault("path", "/");
+        this.query = options.getOrDefault("query", "");
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index <= 0) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            options.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "2,100,10000,1000000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        WebServer server = Main.startServer(0).await(10, TimeUnit.SECONDS);
+        try {
+            LoadTest test = new LoadTest(options, server.port());
+            for (int size : sizes) {
+                System.out.println(test.run(size));
+            }
+        } finally {
+            server.shutdown().await(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private Result run(int size) throws Exception {
+        memory.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        Result result = new Result(size, requests);
+        AtomicInteger remaining = new AtomicInteger(requests);
+        Future<?> sampler = scheduler.scheduleAtFixedRate(() -> {
+            long used = memory.getHeapMemoryUsage().getUsed() - baseline;
+            int inFlight = result.inFlight.get();
+            if (inFlight > 0) {
+                result.peakHeapPerResponse.accumulateAndGet(used / inFlight, Math::max);
+            }
+        }, 0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            boolean slowReader = i < slow;
+            futures.add(executor.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    request(size, slowReader, result);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        result.elapsed = System.nanoTime() - start;
+        executor.shutdown();
+        sampler.cancel(false);
+        measureRetained(size, result);
+        return result;
+    }
+
+    private HttpRequest request(int size) {
+        String uri = "http://localhost:" + port + path + "?size=" + size + (query.isEmpty() ? "" : "&" + query);
+        return HttpRequest.newBuilder(URI.create(uri)).GET().build();
+    }
+
+    private void request(int size, boolean slowReader, Result result) throws Exception {
+        HttpRequest request = request(size);
+        long start = System.nanoTime();
+        result.inFlight.incrementAndGet();
+        try {
+            BodyReader reader = new BodyReader(start, slowReader, false);
+            HttpResponse<Long> response = client.send(request, info -> reader);
+            if (response.statusCode() != 200) {
+                result.errors.incrementAndGet();
+            }
+            result.record(System.nanoTime() - start, reader.ttfb, response.body());
+        } catch (Exception ex) {
+            result.errors.incrementAndGet();
+        } finally {
+            result.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Measure the heap retained per in-flight response, outside of the timed run.
+     * The responses are held open after their first buffer, the heap is measured after a single forced GC.
+     */
+    private void measureRetained(int size, Result result) throws Exception {
+        if (held <= 0) {
+            return;
+        }
+        memory.gc();
+        long baseline = memory.getHeapMemoryUsage().getUsed();
+        List<BodyReader> readers = new ArrayList<>(held);
+        List<CompletableFuture<HttpResponse<Long>>> responses = new ArrayList<>(held);
+        try {
+            for (int i = 0; i < held; i++) {
+                BodyReader reader = new BodyReader(System.nanoTime(), false, true);
+                readers.add(reader);
+                responses.add(client.sendAsync(request(size), info -> reader));
+            }
+            for (BodyReader reader : readers) {
+                reader.first.get(10, TimeUnit.SECONDS);
+            }
+            memory.gc();
+            long used = memory.getHeapMemoryUsage().getUsed() - baseline;
+            result.retainedHeapPerResponse = Math.max(used, 0) / held;
+        } finally {
+            readers.forEach(BodyReader::release);
+            for (CompletableFuture<HttpResponse<Long>> response : responses) {
+                try {
+                    response.get(10, TimeUnit.SECONDS);
+                } catch (Exception ex) {
+                    result.errors.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the response body, one buffer at a time with a delay for slow readers.
+     * A held reader stops requesting after the first buffer until it is released.
+     */
+    private final class BodyReader implements HttpResponse.BodySubscriber<Long> {
+
+        private final CompletableFuture<Long> body = new CompletableFuture<>();
+        private final CompletableFuture<Void> first = new CompletableFuture<>();
+        private final long start;
+        private final boolean slowReader;
+        private final boolean hold;
+        private volatile Flow.Subscription subscription;
+        private long bytes;
+        private volatile long ttfb = -1;
+
+        BodyReader(long start, boolean slowReader, boolean hold) {
+            this.start = start;
+            this.slowReader = slowReader;
+            this.hold = hold;
+        }
+
+        void release() {
+            first.thenRun(() -> subscription.request(Long.MAX_VALUE));
+        }
+
+        @Override
+        public CompletionStage<Long> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (ttfb < 0) {
+                ttfb = System.nanoTime() - start;
+            }
+            for (ByteBuffer buffer : buffers) {
+                bytes += buffer.remaining();
+            }
+            if (hold) {
+                first.complete(null);
+            } else if (slowReader) {
+                scheduler.schedule(() -> subscription.request(1), slowDelay, TimeUnit.MILLISECONDS);
+            } else {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            first.completeExceptionally(throwable);
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            first.complete(null);
+            body.complete(bytes);
+        }
+    }
+
+    private static final class Result {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private final AtomicLong peakHeapPerResponse = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger count = new AtomicInteger();
+        private final long[] latencies;
+        private final long[] ttfbs;
+        private final int size;
+        private long elapsed;
+        private long retainedHeapPerResponse;
+
+        Result(int size, int requests) {
+            this.size = size;
+            this.latencies = new long[requests];
+            this.ttfbs = new long[requests];
+        }
+
+        void record(long latency, long ttfb, long length) {
+            int index = count.getAndIncrement();
+            latencies[index] = latency;
+            ttfbs[index] = ttfb;
+            bytes.addAndGet(length);
+        }
+
+        @Override
+        public String toString() {
+            int n = count.get();
+            long[] latencies = Arrays.copyOf(this.latencies, n);
+            long[] ttfbs = Arrays.copyOf(this.ttfbs, n);
+            Arrays.sort(latencies);
+            Arrays.sort(ttfbs);
+            double seconds = elapsed / 1e9;
+            return String.format("size=%d requests=%d errors=%d req/s=%.1f MB/s=%.2f"
+                                 + " ttfb(p50=%.2fms p99=%.2fms)"
+                                 + " latency(p50=%.2fms p99=%.2fms p999=%.2fms)"
+                                 + " heap/response(peak=%dKB retained=%dKB)",
+                    size, n, errors.get(), n / seconds, bytes.get() / seconds / (1024 * 1024),
+                    percentile(ttfbs, 0.5), percentile(ttfbs, 0.99),
+                    percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                    peakHeapPerResponse.get() / 1024, retainedHeapPerResponse / 1024);
+        }
+
+        private static double percentile(long[] values, double percentile) {
+            if (values.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * values.length) - 1;
+            return values[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.acme.json.rx.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.acme.json.rx.JsonMultiOutputStream;
+import com.acme.json.rx.JsonMultiWriter;
+import com.acme.json.rx.JsonProviderRx;
+import com.acme.json.rx.TestService.Company;
+import com.acme.json.rx.TestService.Employee;
+
+import io.helidon.common.reactive.Multi;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.spi.JsonProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the serialization of a {@link Company} with {@code size} employees.
+ * <ul>
+ *     <li>{@code buffered}: plain Jsonb into a {@link ByteArrayOutputStream}</li>
+ *     <li>{@code eventQueue}: event queue mode, Parsson backend</li>
+ *     <li>{@code eventQueueUtf8}: event queue mode, UTF-8 backend</li>
+ *     <li>{@code blocking}: blocking mode, Parsson backend</li>
+ *     <li>{@code blockingUtf8}: blocking mode, UTF-8 backend</li>
+ *     <li>{@code compiled}: event queue mode, Parsson backend, compiled writers</li>
+ *     <li>{@code compiledUtf8}: event queue mode, UTF-8 backend, compiled writers</li>
+ *     <li>{@code multiArray}: employees streamed from a {@link Multi} with {@link JsonMultiWriter}</li>
+ *     <li>{@code parallelArray}: employees serialized in parallel segments with {@link JsonMultiWriter}</li>
+ * </ul>
+ * The chunks are drained by a local subscriber that requests {@code request} chunks at a time ({@code 0} for
+ * unbounded).
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar -prof gc} to report the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final String[] NAMES = new String[] {
+            "Athena", "Breanne", "Cindy", "Claribel", "Dash", "Everly", "Gallagher", "Giles"
+    };
+
+    @Param({"2", "100", "10000", "1000000"})
+    int size;
+
+    @Param({"1", "16", "0"})
+    long request;
+
+    private Jsonb buffered;
+    private Jsonb rx;
+    private Jsonb rxUtf8;
+    private JsonMultiWriter writer;
+    private JsonMultiWriter writerUtf8;
+    private JsonMultiWriter parallelWriter;
+    private Company company;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        JsonProvider provider = JsonProvider.provider();
+        JsonProviderRx providerRx = JsonProviderRx.create(provider);
+        buffered = JsonbBuilder.newBuilder().withProvider(provider).build();
+        rx = JsonbBuilder.newBuilder().withProvider(providerRx).build();
+        JsonProviderRx providerUtf8 = JsonProviderRx.create(provider, JsonProviderRx.Backend.UTF8);
+        rxUtf8 = JsonbBuilder.newBuilder()
+                .withProvider(providerUtf8)
+                .build();
+        writer = JsonMultiWriter.builder()
+                .provider(providerRx)
+                .jsonb(rx)
+                .compiled(true)
+                .build();
+        writerUtf8 = JsonMultiWriter.builder()
+                .provider(providerUtf8)
+                .jsonb(rxUtf8)
+                .compiled(true)
+                .build();
+        parallelWriter = JsonMultiWriter.builder()
+                .provider(providerRx)
+                .jsonb(rx)
+                .compiled(true)
+                .parallel(1)
+                .build();
+        Random random = new Random(0);
+        List<Employee> employees = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            employees.add(new Employee(
+                    NAMES[random.nextInt(NAMES.length)],
+                    NAMES[random.nextInt(NAMES.length)],
+                    "Senior Configuration Specialist"));
+        }
+        company = new Company("Acme Corp.", employees);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        buffered.close();
+        rx.close();
+        rxUtf8.close();
+    }
+
+    @Benchmark
+    public long buffered() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        buffered.toJson(company, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public long eventQueue() {
+        return stream(rx, false);
+    }
+
+    @Benchmark
+    public long eventQueueUtf8() {
+        return stream(rxUtf8, false);
+    }
+
+    @Benchmark
+    public long blocking() {
+        return stream(rx, true);
+    }
+
+    @Benchmark
+    public long blockingUtf8() {
+        return stream(rxUtf8, true);
+    }
+
+    @Benchmark
+    public long compiled() {
+        return compiled(writer);
+    }
+
+    @Benchmark
+    public long compiledUtf8() {
+        return compiled(writerUtf8);
+    }
+
+    @Benchmark
+    public long multiArray() {
+        return ChunkDrain.drain(writer.array(Multi.create(company.employees())), batch());
+    }
+
+    @Benchmark
+    public long parallelArray() {
+        return ChunkDrain.drain(parallelWriter.array(company.employees()), batch());
+    }
+
+    private long stream(Jsonb jsonb, boolean blocking) {
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .blocking(blocking)
+                .build();
+        return ChunkDrain.drain(stream.produce(out -> jsonb.toJson(company, out)), batch());
+    }
+
+    private long compiled(JsonMultiWriter writer) {
+        JsonMultiOutputStream stream = JsonMultiOutputStream.create();
+        return ChunkDrain.drain(stream.produce(out -> writer.toJson(company, out)), batch());
+    }
+
+    private long batch() {
+        return request <= 0 ? Long.MAX_VALUE : request;
+    }
+}
@@ -0,0 +1,141 @@
+package com.acme.json.rx;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.helidon.common.http.DataChunk;
+
+/**
+ * Pool of fixed-size {@link ByteBuffer} used to emit {@link DataChunk}.
+ * <p>
+ * A buffer is returned to the pool when the chunk that wraps it is released. Released buffers are first kept by the
+ * releasing thread for its next chunks, then shared with the other threads. If the pool is empty a new buffer is
+ * allocated, if the pool is full a released buffer is left to the garbage collector.
+ */
+public final class JsonBufferPool {
+
+    private static final int DEFAULT_BUFFER_SIZE = 4 * 1024;
+    private static final int DEFAULT_MAX_POOLED = 1024;
+    private static final int MAX_LOCAL = 16;
+    private static final Map<Integer, JsonBufferPool> SHARED = new ConcurrentHashMap<>();
+
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    private final JsonRecycler<ByteBuffer> local;
+    private final int bufferSize;
+    private final int maxPooled;
+    private final boolean direct;
+
+    private JsonBufferPool(int bufferSize, int maxPooled, boolean direct) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size: " + bufferSize);
+        }
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("Invalid max pooled: " + maxPooled);
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+        this.direct = direct;
+        this.local = JsonRecycler.create(Math.min(MAX_LOCAL, maxPooled));
+    }
+
+    /**
+     * Get the shared pool of {@code 4KB} heap buffers.
+     *
+     * @return pool
+     */
+    public static JsonBufferPool create() {
+        return create(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Get the shared pool of heap buffers of the given size.
+     *
+     * @param bufferSize size of the pooled buffers
+     * @return pool
+     */
+    public static JsonBufferPool create(int bufferSize) {
+        return SHARED.computeIfAbsent(bufferSize, size -> new JsonBufferPool(size, DEFAULT_MAX_POOLED, false));
+    }
+
+    /**
+     * Create a new pool.
+     *
+     * @param bufferSize size of the pooled buffers
+     * @param maxPooled  maximum number of idle buffers kept in the pool
+     * @param direct     {@code true} to allocate direct buffers, {@code false} to allocate heap buffers
+     * @return pool
+     */
+    public static JsonBufferPool create(int bufferSize, int maxPooled, boolean direct) {
+        return new JsonBufferPool(bufferSize, maxPooled, direct);
+    }
+
+    /**
+     * Get the size of the pooled buffers.
+     *
+     * @return buffer size
+     */
+    public int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Get a cleared buffer from the pool, or allocate a new one if the pool is empty.
+     *
+     * @return buffer
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = local.acquire();
+        if (buffer != null) {
+            return buffer;
+        }
+        buffer = buffers.poll();
+        if (buffer == null) {
+            return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer to the pool.
+     *
+     * @param buffer buffer
+     */
+    void release(ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+            return;
+        }
+        buffer.clear();
+        if (local.release(buffer)) {
+            return;
+        }
+        if (pooled.incrementAndGet() > maxPooled) {
+            pooled.decrementAndGet();
+            return;
+        }
+        buffers.offer(buffer);
+    }
+
+    /**
+     * Create a chunk that returns the given buffer to this pool when released.
+     * The buffer is returned at most once, even if the chunk is released multiple times.
+     *
+     * @param flush  flush flag
+     * @param buffer buffer, flipped
+     * @return chunk
+     */
+    DataChunk chunk(boolean flush, ByteBuffer buffer) {
+        AtomicBoolean released = new AtomicBoolean();
+        return DataChunk.create(flush, () -> {
+            if (released.compareAndSet(false, true)) {
+                release(buffer);
+            }
+        }, buffer);
+    }
+}
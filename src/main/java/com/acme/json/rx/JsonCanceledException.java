@@ -0,0 +1,35 @@
+package com.acme.json.rx;
+
+/**
+ * Thrown to the producer when writing to a {@link JsonMultiOutputStream} that has been canceled, e.g. when the client
+ * disconnects, in order to stop the serialization.
+ * <p>
+ * The exception is a shared instance without stack trace, it is cheap to throw. Jsonb may wrap it, see
+ * {@link #isCause(Throwable)}. The stream ignores it when thrown by its producer.
+ */
+public final class JsonCanceledException extends RuntimeException {
+
+    /**
+     * Shared instance.
+     */
+    static final JsonCanceledException INSTANCE = new JsonCanceledException();
+
+    private JsonCanceledException() {
+        super("Stream canceled", null, false, false);
+    }
+
+    /**
+     * Test if the given exception is caused by a cancellation.
+     *
+     * @param throwable exception
+     * @return {@code true} if the exception or one of its causes is a {@link JsonCanceledException}
+     */
+    public static boolean isCause(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t == INSTANCE) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,222 @@
+package com.acme.json.rx;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.Deflater;
+
+/**
+ * Compression of the chunks emitted by {@link JsonMultiOutputStream}.
+ * <p>
+ * The bytes are deflated as the chunks are produced, the compressed chunks are emitted on demand like the
+ * uncompressed ones. The response {@code Content-Encoding} header must be set to {@link Encoding#token()}.
+ * <pre>{@code
+ * Optional<JsonCompression> compression = req.headers().value("Accept-Encoding")
+ *         .flatMap(JsonCompression::negotiate);
+ * compression.ifPresent(c -> res.headers().add("Content-Encoding", c.encoding().token()));
+ * JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+ *         .compression(compression.orElse(null))
+ *         .build();
+ * }</pre>
+ */
+public final class JsonCompression {
+
+    /**
+     * Content encoding.
+     */
+    public enum Encoding {
+
+        /**
+         * GZIP format (RFC 1952).
+         */
+        GZIP("gzip"),
+
+        /**
+         * ZLIB format (RFC 1950).
+         */
+        DEFLATE("deflate");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        /**
+         * Get the content coding token, e.g. {@code gzip}.
+         *
+         * @return token
+         */
+        public String token() {
+            return token;
+        }
+    }
+
+    private final Encoding encoding;
+    private final int level;
+    private final boolean syncFlush;
+
+    private JsonCompression(Builder builder) {
+        this.encoding = builder.encoding;
+        this.level = builder.level;
+        this.syncFlush = builder.syncFlush;
+    }
+
+    /**
+     * Create a new compression with the default level.
+     *
+     * @param encoding encoding
+     * @return compression
+     */
+    public static JsonCompression create(Encoding encoding) {
+        return builder().encoding(encoding).build();
+    }
+
+    /**
+     * Select the compression from the value of an {@code Accept-Encoding} header.
+     * {@code gzip} is preferred over {@code deflate} when both are equally acceptable.
+     *
+     * @param acceptEncoding header value
+     * @return compression, empty if neither {@code gzip} nor {@code deflate} is acceptable
+     */
+    public static Optional<JsonCompression> negotiate(String acceptEncoding) {
+        Encoding selected = null;
+        double selectedQuality = 0;
+        double wildcardQuality = -1;
+        double gzipQuality = -1;
+        double deflateQuality = -1;
+        for (String element : acceptEncoding.split(",")) {
+            String[] params = element.split(";");
+            String coding = params[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException ignored) {
+                        quality = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzipQuality = quality;
+                case "deflate" -> deflateQuality = quality;
+                case "*" -> wildcardQuality = quality;
+                default -> {
+                }
+            }
+        }
+        if (gzipQuality < 0) {
+            gzipQuality = wildcardQuality;
+        }
+        if (deflateQuality < 0) {
+            deflateQuality = wildcardQuality;
+        }
+        if (gzipQuality > selectedQuality) {
+            selected = Encoding.GZIP;
+            selectedQuality = gzipQuality;
+        }
+        if (deflateQuality > selectedQuality) {
+            selected = Encoding.DEFLATE;
+        }
+        return Optional.ofNullable(selected).map(JsonCompression::create);
+    }
+
+    /**
+     * Create a new builder.
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the encoding.
+     *
+     * @return encoding
+     */
+    public Encoding encoding() {
+        return encoding;
+    }
+
+    /**
+     * Get the compression level.
+     *
+     * @return level, {@code -1} for the default level
+     */
+    public int level() {
+        return level;
+    }
+
+    /**
+     * Indicate if every chunk is sync-flushed.
+     *
+     * @return {@code true} if every chunk is sync-flushed
+     */
+    public boolean syncFlush() {
+        return syncFlush;
+    }
+
+    /**
+     * Builder of {@link JsonCompression}.
+     */
+    public static final class Builder {
+
+        private Encoding encoding = Encoding.GZIP;
+        private int level = Deflater.DEFAULT_COMPRESSION;
+        private boolean syncFlush;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the encoding, the default is {@link Encoding#GZIP}.
+         *
+         * @param encoding encoding
+         * @return this builder
+         */
+        public Builder encoding(Encoding encoding) {
+            this.encoding = encoding;
+            return this;
+        }
+
+        /**
+         * Set the compression level, from {@code 0} to {@code 9}, or {@code -1} for the default level.
+         *
+         * @param level level
+         * @return this builder
+         */
+        public Builder level(int level) {
+            if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+                throw new IllegalArgumentException("Invalid level: " + level);
+            }
+            this.level = level;
+            return this;
+        }
+
+        /**
+         * Sync-flush the deflater for every chunk, the default is {@code false}.
+         * <p>
+         * By default the deflater is sync-flushed only when the stream is flushed, the data buffered by the deflater
+         * is emitted later with a better compression ratio. When enabled, every chunk can be decoded as soon as it
+         * is received at the expense of the compression ratio.
+         *
+         * @param syncFlush {@code true} to sync-flush every chunk
+         * @return this builder
+         */
+        public Builder syncFlush(boolean syncFlush) {
+            this.syncFlush = syncFlush;
+            return this;
+        }
+
+        /**
+         * Build the compression.
+         *
+         * @return JsonCompression
+         */
+        public JsonCompression build() {
+            return new JsonCompression(this);
+        }
+    }
+}
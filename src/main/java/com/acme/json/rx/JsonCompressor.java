@@ -0,0 +1,256 @@
+package com.acme.json.rx;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import io.helidon.common.http.DataChunk;
+
+/**
+ * Deflate the chunk buffers of a {@link JsonMultiOutputStream} into pooled buffers.
+ * <p>
+ * {@link Deflater} instances are pooled per level and format. A deflater is acquired on the first write and returned
+ * to the pool when the output is finished. If the stream is canceled or fails, the deflater is ended instead, see
+ * {@link #abort()}. The deflater is only used with a lock held so that it is not ended during a call, the chunks are
+ * published without the lock.
+ */
+final class JsonCompressor {
+
+    private static final int MAX_POOLED = 256;
+    private static final Map<Integer, Queue<Deflater>> POOL = new ConcurrentHashMap<>();
+    private static final Map<Integer, AtomicInteger> POOLED = new ConcurrentHashMap<>();
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final byte[] NO_INPUT = new byte[0];
+
+    private final JsonBufferPool pool;
+    private final Consumer<DataChunk> publisher;
+    private final boolean gzip;
+    private final boolean syncFlush;
+    private final int key;
+    private final int level;
+    private final CRC32 crc;
+    // guards the deflater, abort ends it from another thread
+    private final Object lock = new Object();
+    // acquired on first use, taken by the first of finish and abort
+    private Deflater deflater;
+    private volatile boolean aborted;
+    // only used by the writing thread
+    private ByteBuffer output;
+    private boolean finished;
+
+    /**
+     * Create a new compressor.
+     *
+     * @param compression compression
+     * @param pool        pool of output buffers
+     * @param publisher   publisher of the compressed chunks
+     */
+    JsonCompressor(JsonCompression compression, JsonBufferPool pool, Consumer<DataChunk> publisher) {
+        if (pool.bufferSize() < GZIP_HEADER.length + GZIP_TRAILER_SIZE) {
+            throw new IllegalArgumentException("Chunk size too small: " + pool.bufferSize());
+        }
+        this.pool = pool;
+        this.publisher = publisher;
+        this.gzip = compression.encoding() == JsonCompression.Encoding.GZIP;
+        this.syncFlush = compression.syncFlush();
+        this.key = (compression.level() + 1) << 1 | (gzip ? 1 : 0);
+        this.level = compression.level();
+        this.crc = gzip ? new CRC32() : null;
+        this.output = pool.acquire();
+        if (gzip) {
+            output.put(GZIP_HEADER);
+        }
+    }
+
+    /**
+     * Deflate the given bytes.
+     *
+     * @param input input, consumed
+     */
+    void write(ByteBuffer input) {
+        if (crc != null) {
+            crc.update(input.duplicate());
+        }
+        synchronized (lock) {
+            deflater().setInput(input);
+        }
+        while (!needsInput()) {
+            deflate(Deflater.NO_FLUSH);
+        }
+        synchronized (lock) {
+            // the input buffer is reused by the caller, the deflater must not read it again
+            deflater().setInput(NO_INPUT);
+        }
+        if (syncFlush) {
+            flush();
+        }
+    }
+
+    /**
+     * Emit all the bytes buffered by the deflater.
+     */
+    void flush() {
+        if (finished) {
+            return;
+        }
+        while (deflate(Deflater.SYNC_FLUSH)) {
+            // the output was full, there may be more
+        }
+        publishMaybe();
+    }
+
+    /**
+     * Finish the compressed output, emit the remaining bytes and return the deflater to the pool.
+     */
+    void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        synchronized (lock) {
+            deflater().finish();
+        }
+        while (!deflated()) {
+            deflate(Deflater.NO_FLUSH);
+        }
+        if (gzip) {
+            if (output.remaining() < GZIP_TRAILER_SIZE) {
+                publish();
+            }
+            int totalIn;
+            synchronized (lock) {
+                totalIn = deflater().getTotalIn();
+            }
+            output.order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt((int) crc.getValue())
+                    .putInt(totalIn)
+                    .order(ByteOrder.BIG_ENDIAN);
+        }
+        publishMaybe();
+        pool.release(output);
+        output = null;
+        synchronized (lock) {
+            if (deflater != null) {
+                release(key, deflater);
+                deflater = null;
+            }
+        }
+    }
+
+    /**
+     * End the deflater if it has not been returned to the pool, at most once.
+     * This is invoked when the stream is canceled or fails, possibly while the writing thread uses the deflater: the
+     * deflater is ended once the current deflate call returns, the next write throws {@link JsonCanceledException}.
+     */
+    void abort() {
+        synchronized (lock) {
+            aborted = true;
+            if (deflater != null) {
+                deflater.end();
+                deflater = null;
+            }
+        }
+    }
+
+    /**
+     * Get the deflater, acquired on first use. Must be invoked with the lock held.
+     *
+     * @return deflater
+     * @throws JsonCanceledException if aborted
+     */
+    private Deflater deflater() {
+        if (aborted) {
+            canceled();
+        }
+        if (deflater == null) {
+            deflater = acquire(key, level, gzip);
+        }
+        return deflater;
+    }
+
+    private boolean needsInput() {
+        synchronized (lock) {
+            return deflater().needsInput();
+        }
+    }
+
+    private boolean deflated() {
+        synchronized (lock) {
+            return deflater().finished();
+        }
+    }
+
+    /**
+     * Deflate into the current output buffer, the buffer is emitted if full.
+     *
+     * @param flush flush mode
+     * @return {@code true} if the output buffer was full
+     * @throws JsonCanceledException if aborted
+     */
+    private boolean deflate(int flush) {
+        synchronized (lock) {
+            deflater().deflate(output, flush);
+        }
+        if (aborted) {
+            canceled();
+        }
+        if (output.hasRemaining()) {
+            return false;
+        }
+        publish();
+        return true;
+    }
+
+    /**
+     * Return the output buffer to the pool and stop the writing thread.
+     */
+    private void canceled() {
+        if (output != null) {
+            pool.release(output);
+            output = null;
+        }
+        throw JsonCanceledException.INSTANCE;
+    }
+
+    private void publishMaybe() {
+        if (output.position() > 0) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        output.flip();
+        ByteBuffer emitBuffer = output;
+        output = pool.acquire();
+        publisher.accept(pool.chunk(false, emitBuffer));
+    }
+
+    private static Deflater acquire(int key, int level, boolean nowrap) {
+        Queue<Deflater> deflaters = POOL.get(key);
+        Deflater deflater = deflaters != null ? deflaters.poll() : null;
+        if (deflater == null) {
+            return new Deflater(level, nowrap);
+        }
+        POOLED.get(key).decrementAndGet();
+        return deflater;
+    }
+
+    private static void release(int key, Deflater deflater) {
+        AtomicInteger pooled = POOLED.computeIfAbsent(key, k -> new AtomicInteger());
+        if (pooled.incrementAndGet() > MAX_POOLED) {
+            pooled.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        deflater.reset();
+        POOL.computeIfAbsent(key, k -> new ConcurrentLinkedQueue<>()).offer(deflater);
+    }
+}
@@ -0,0 +1,236 @@
+package com.acme.json.rx;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unbounded single-producer single-consumer queue of generator events stored as a struct of arrays.
+ * <p>
+ * Each event is made of a type, an optional name, an optional reference value ({@code String},
+ * {@code BigDecimal}, etc.) and optional primitive bits ({@code int}, {@code long}, {@code double} as raw bits
+ * or {@code boolean}). Storing the primitive values as raw bits avoids allocating and boxing for every event.
+ * <p>
+ * Events are stored in a linked list of fixed-size segments. The producer publishes an event with a release store of
+ * the tail count, the consumer reads it after an acquire load of the tail count; no locks are used. Segments are
+ * recycled when consumed and when the buffer is released. A released buffer is kept with its first segment by the
+ * releasing thread for its next generator, adding an event to a released buffer fails.
+ */
+final class JsonEventBuffer {
+
+    private static final int SEGMENT_SIZE = 256;
+    private static final int MAX_POOLED_SEGMENTS = 1024;
+    private static final Queue<Segment> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+    private static final JsonRecycler<JsonEventBuffer> RECYCLER = JsonRecycler.create(16);
+
+    /**
+     * Fixed-size array of events.
+     */
+    private static final class Segment {
+
+        final byte[] types = new byte[SEGMENT_SIZE];
+        final long[] bits = new long[SEGMENT_SIZE];
+        final String[] names = new String[SEGMENT_SIZE];
+        final Object[] values = new Object[SEGMENT_SIZE];
+        volatile Segment next;
+
+        static Segment acquire() {
+            Segment segment = POOL.poll();
+            if (segment == null) {
+                return new Segment();
+            }
+            POOLED.decrementAndGet();
+            return segment;
+        }
+
+        void release() {
+            next = null;
+            if (POOLED.incrementAndGet() > MAX_POOLED_SEGMENTS) {
+                POOLED.decrementAndGet();
+                return;
+            }
+            POOL.offer(this);
+        }
+    }
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    // producer
+    private Segment tailSegment;
+    private int tailIndex;
+    private long produced;
+
+    // consumer
+    private Segment headSegment;
+    private int headIndex;
+    private long consumed;
+
+    // first segment of a recycled buffer
+    private Segment spare;
+
+    private JsonEventBuffer() {
+        spare = Segment.acquire();
+        reset();
+    }
+
+    /**
+     * Get a buffer released by the current thread, or create a new buffer with a recycled segment.
+     *
+     * @return empty buffer
+     */
+    static JsonEventBuffer acquire() {
+        JsonEventBuffer buffer = RECYCLER.acquire();
+        if (buffer == null) {
+            return new JsonEventBuffer();
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Clear this buffer and recycle it with its segments.
+     * Must be invoked by the consumer, once the producer is done. The buffer must not be used after this method is
+     * invoked.
+     */
+    void release() {
+        Segment segment = headSegment;
+        if (segment == null) {
+            throw new IllegalStateException("Event buffer already released");
+        }
+        headSegment = null;
+        tailSegment = null;
+        spare = segment;
+        while (segment != null) {
+            Segment next = segment.next;
+            Arrays.fill(segment.names, null);
+            Arrays.fill(segment.values, null);
+            if (segment != spare) {
+                segment.release();
+            }
+            segment = next;
+        }
+        spare.next = null;
+        if (!RECYCLER.release(this)) {
+            spare.release();
+            spare = null;
+        }
+    }
+
+    private void reset() {
+        tail.set(0);
+        head.set(0);
+        produced = 0;
+        consumed = 0;
+        tailIndex = 0;
+        headIndex = 0;
+        tailSegment = spare;
+        headSegment = spare;
+        spare = null;
+    }
+
+    /**
+     * Add an event, invoked by the producer.
+     *
+     * @param type  event type
+     * @param name  name, may be {@code null}
+     * @param value reference value, may be {@code null}
+     * @param raw   primitive value bits
+     */
+    void add(byte type, String name, Object value, long raw) {
+        if (tailSegment == null) {
+            throw new IllegalStateException("Event buffer released");
+        }
+        if (tailIndex == SEGMENT_SIZE) {
+            Segment segment = Segment.acquire();
+            tailSegment.next = segment;
+            tailSegment = segment;
+            tailIndex = 0;
+        }
+        Segment segment = tailSegment;
+        int index = tailIndex++;
+        segment.types[index] = type;
+        segment.names[index] = name;
+        segment.values[index] = value;
+        segment.bits[index] = raw;
+        tail.setRelease(++produced);
+    }
+
+    /**
+     * Test if this buffer has no event, invoked by the consumer before reading the head event.
+     *
+     * @return {@code true} if empty, {@code false} otherwise
+     */
+    boolean isEmpty() {
+        if (consumed == tail.getAcquire()) {
+            return true;
+        }
+        if (headIndex == SEGMENT_SIZE) {
+            // the producer linked the next segment before publishing the event
+            Segment segment = headSegment;
+            headSegment = segment.next;
+            headIndex = 0;
+            segment.release();
+        }
+        return false;
+    }
+
+    /**
+     * Get the number of events in this buffer, invoked by the producer.
+     *
+     * @return size
+     */
+    int size() {
+        return (int) (produced - head.getAcquire());
+    }
+
+    /**
+     * Get the type of the head event.
+     *
+     * @return type
+     */
+    byte type() {
+        return headSegment.types[headIndex];
+    }
+
+    /**
+     * Get the name of the head event.
+     *
+     * @return name, may be {@code null}
+     */
+    String name() {
+        return headSegment.names[headIndex];
+    }
+
+    /**
+     * Get the reference value of the head event.
+     *
+     * @return value, may be {@code null}
+     */
+    Object value() {
+        return headSegment.values[headIndex];
+    }
+
+    /**
+     * Get the primitive value bits of the head event.
+     *
+     * @return bits
+     */
+    long bits() {
+        return headSegment.bits[headIndex];
+    }
+
+    /**
+     * Remove the head event.
+     */
+    void remove() {
+        Segment segment = headSegment;
+        int index = headIndex++;
+        segment.names[index] = null;
+        segment.values[index] = null;
+        head.setRelease(++consumed);
+    }
+}
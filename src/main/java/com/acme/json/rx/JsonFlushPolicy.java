@@ -0,0 +1,112 @@
+package com.acme.json.rx;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Policy applied when {@link JsonMultiOutputStream#flush()} is invoked, e.g. by Jsonb or by the generator.
+ * <p>
+ * A flush emits the buffered bytes followed by a flush chunk, which forces a network flush. Closing the stream always
+ * flushes.
+ */
+public final class JsonFlushPolicy {
+
+    enum Kind {
+        IMMEDIATE,
+        NEVER,
+        BYTES,
+        INTERVAL
+    }
+
+    private static final JsonFlushPolicy IMMEDIATE = new JsonFlushPolicy(Kind.IMMEDIATE, 0);
+    private static final JsonFlushPolicy NEVER = new JsonFlushPolicy(Kind.NEVER, 0);
+
+    private final Kind kind;
+    private final long value;
+
+    private JsonFlushPolicy(Kind kind, long value) {
+        this.kind = kind;
+        this.value = value;
+    }
+
+    /**
+     * Flush every time, this is the default.
+     *
+     * @return policy
+     */
+    public static JsonFlushPolicy immediate() {
+        return IMMEDIATE;
+    }
+
+    /**
+     * Ignore flushes, only flush when the stream is closed.
+     *
+     * @return policy
+     */
+    public static JsonFlushPolicy never() {
+        return NEVER;
+    }
+
+    /**
+     * Flush only if at least the given number of bytes were written since the last flush.
+     *
+     * @param bytes number of bytes
+     * @return policy
+     */
+    public static JsonFlushPolicy bytes(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Invalid bytes: " + bytes);
+        }
+        return new JsonFlushPolicy(Kind.BYTES, bytes);
+    }
+
+    /**
+     * Flush at most once per interval.
+     * <p>
+     * The first flush requested after a flush arms a timer on a shared scheduler. In event queue mode the generator
+     * flushes when the timer fires, even if nothing else is written. Otherwise the flush is performed by the first
+     * flush or write of a chunk after the timer fires, since only the writing thread can write to the stream.
+     *
+     * @param interval interval
+     * @return policy
+     */
+    public static JsonFlushPolicy interval(Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Invalid interval: " + interval);
+        }
+        return new JsonFlushPolicy(Kind.INTERVAL, interval.toNanos());
+    }
+
+    Kind kind() {
+        return kind;
+    }
+
+    /**
+     * Get the number of bytes of {@link Kind#BYTES}, or the interval in nanoseconds of {@link Kind#INTERVAL}.
+     *
+     * @return value
+     */
+    long value() {
+        return value;
+    }
+
+    /**
+     * Run the given task after the interval on the shared scheduler.
+     *
+     * @param task task
+     */
+    void schedule(Runnable task) {
+        Scheduler.INSTANCE.schedule(task, value, TimeUnit.NANOSECONDS);
+    }
+
+    private static final class Scheduler {
+
+        static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "json-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package com.acme.json.rx;
+
+/**
+ * Output format of a {@link JsonMultiOutputStream}.
+ * <p>
+ * The format is selected per stream, the generators created by {@link JsonProviderRx} for a {@link #CBOR} stream
+ * encode the same generator events as CBOR. Jsonb and the compiled writers are unchanged. The response
+ * {@code Content-Type} header must be set to {@link #mediaType()}.
+ * <pre>{@code
+ * MediaType accepted = req.headers().bestAccepted(MediaType.APPLICATION_JSON, APPLICATION_CBOR)
+ *         .orElse(MediaType.APPLICATION_JSON);
+ * JsonFormat format = APPLICATION_CBOR.test(accepted) ? JsonFormat.CBOR : JsonFormat.JSON;
+ * res.headers().add("Content-Type", format.mediaType());
+ * JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+ *         .format(format)
+ *         .build();
+ * }</pre>
+ */
+public enum JsonFormat {
+
+    /**
+     * JSON text (RFC 8259).
+     */
+    JSON("application/json"),
+
+    /**
+     * CBOR (RFC 8949), structures are encoded with indefinite lengths and a sequence of documents is a CBOR sequence
+     * (RFC 8742).
+     */
+    CBOR("application/cbor");
+
+    private final String mediaType;
+
+    JsonFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    /**
+     * Get the media type, e.g. {@code application/cbor}.
+     *
+     * @return media type
+     */
+    public String mediaType() {
+        return mediaType;
+    }
+}
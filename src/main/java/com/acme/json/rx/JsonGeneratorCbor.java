@@ -0,0 +1,495 @@
+package com.acme.json.rx;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonGenerationException;
+import jakarta.json.stream.JsonGenerator;
+
+/**
+ * Generator that encodes CBOR directly into the chunk buffers of a {@link JsonMultiOutputStream}, see
+ * {@link JsonFormat#CBOR}.
+ * <p>
+ * Objects and arrays are encoded as indefinite-length maps and arrays since their size is not known when they are
+ * started. Integers use the shortest encoding, doubles are encoded as single precision floats when exact,
+ * {@link BigInteger} values that do not fit in a {@code long} are encoded as bignums and {@link BigDecimal} values as
+ * decimal fractions. Strings are encoded to UTF-8 without escaping.
+ */
+final class JsonGeneratorCbor implements JsonGenerator {
+
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+    private static final int MAX_HEAD_BYTES = 9;
+    private static final int MAX_CHAR_BYTES = 4;
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1;
+    private static final int BYTES = 2;
+    private static final int TEXT = 3;
+    private static final int FIXED_ARRAY = 4;
+    private static final int TAG = 6;
+    private static final int TAG_BIGNUM = 2;
+    private static final int TAG_NEGATIVE_BIGNUM = 3;
+    private static final int TAG_DECIMAL_FRACTION = 4;
+    private static final byte START_ARRAY = (byte) 0x9f;
+    private static final byte START_MAP = (byte) 0xbf;
+    private static final byte BREAK = (byte) 0xff;
+    private static final byte FALSE = (byte) 0xf4;
+    private static final byte TRUE = (byte) 0xf5;
+    private static final byte NULL = (byte) 0xf6;
+    private static final byte FLOAT = (byte) 0xfa;
+    private static final byte DOUBLE = (byte) 0xfb;
+
+    private final JsonMultiOutputStream stream;
+    private final boolean document;
+    private byte[] scopes = new byte[16];
+    private int depth;
+    private boolean written;
+    private boolean key;
+    private ByteBuffer buf;
+
+    /**
+     * Create a new generator.
+     *
+     * @param os output, must be a {@link JsonMultiOutputStream} or a document view of it
+     */
+    JsonGeneratorCbor(OutputStream os) {
+        if (os instanceof JsonMultiOutputStream.DocumentView view) {
+            this.stream = view.stream();
+            this.document = true;
+        } else if (os instanceof JsonMultiOutputStream multiStream) {
+            this.stream = multiStream;
+            this.document = false;
+        } else {
+            throw new IllegalArgumentException("Not an instance of " + JsonMultiOutputStream.class);
+        }
+    }
+
+    @Override
+    public JsonGenerator writeStartObject() {
+        value();
+        start(START_MAP, OBJECT);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeStartObject(String name) {
+        name(name);
+        start(START_MAP, OBJECT);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeKey(String name) {
+        name(name);
+        key = true;
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeStartArray() {
+        value();
+        start(START_ARRAY, ARRAY);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeStartArray(String name) {
+        name(name);
+        start(START_ARRAY, ARRAY);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, JsonValue value) {
+        writeKey(name);
+        return write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, String value) {
+        name(name);
+        string(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, BigInteger value) {
+        name(name);
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, BigDecimal value) {
+        name(name);
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, int value) {
+        name(name);
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, long value) {
+        name(name);
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, double value) {
+        name(name);
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, boolean value) {
+        name(name);
+        simple(value ? TRUE : FALSE);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeNull(String name) {
+        name(name);
+        simple(NULL);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeEnd() {
+        if (depth == 0) {
+            throw new JsonGenerationException("writeEnd() cannot be called in no context");
+        }
+        if (key) {
+            throw new JsonGenerationException("writeEnd() cannot be called after writeKey()");
+        }
+        simple(BREAK);
+        depth--;
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(JsonValue value) {
+        switch (value.getValueType()) {
+            case ARRAY -> {
+                writeStartArray();
+                for (JsonValue child : (JsonArray) value) {
+                    write(child);
+                }
+                writeEnd();
+            }
+            case OBJECT -> {
+                writeStartObject();
+                for (Map.Entry<String, JsonValue> member : ((JsonObject) value).entrySet()) {
+                    write(member.getKey(), member.getValue());
+                }
+                writeEnd();
+            }
+            case STRING -> write(((JsonString) value).getString());
+            case NUMBER -> {
+                JsonNumber number = (JsonNumber) value;
+                value();
+                if (number.isIntegral()) {
+                    number(number.bigIntegerValue());
+                } else {
+                    number(number.bigDecimalValue());
+                }
+                commit();
+            }
+            case TRUE -> write(true);
+            case FALSE -> write(false);
+            case NULL -> writeNull();
+        }
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(String value) {
+        value();
+        string(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(BigDecimal value) {
+        value();
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(BigInteger value) {
+        value();
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(int value) {
+        value();
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(long value) {
+        value();
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(double value) {
+        value();
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(boolean value) {
+        value();
+        simple(value ? TRUE : FALSE);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeNull() {
+        value();
+        simple(NULL);
+        return commit();
+    }
+
+    @Override
+    public void close() {
+        if (depth != 0 || !written) {
+            throw new JsonGenerationException("Generating incomplete JSON");
+        }
+        if (!document) {
+            stream.close();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (!document) {
+            stream.flush();
+        }
+    }
+
+    /**
+     * Prepare to write a value.
+     */
+    private void value() {
+        if (key) {
+            key = false;
+            return;
+        }
+        switch (scopes[depth]) {
+            case OBJECT -> throw new JsonGenerationException("Name required to write a value in an object");
+            case ARRAY -> {
+                // no separator
+            }
+            default -> {
+                if (written) {
+                    throw new JsonGenerationException("Cannot generate more than one JSON text");
+                }
+                written = true;
+            }
+        }
+    }
+
+    /**
+     * Write a name, the value follows.
+     *
+     * @param name name
+     */
+    private void name(String name) {
+        if (scopes[depth] != OBJECT || key) {
+            throw new JsonGenerationException("Name can only be written in an object and before a value");
+        }
+        string(name);
+    }
+
+    private void start(byte initial, byte scope) {
+        simple(initial);
+        if (++depth == scopes.length) {
+            byte[] newScopes = new byte[depth << 1];
+            System.arraycopy(scopes, 0, newScopes, 0, depth);
+            scopes = newScopes;
+        }
+        scopes[depth] = scope;
+    }
+
+    private void simple(byte initial) {
+        reserve(1);
+        buf.put(initial);
+    }
+
+    /**
+     * Write the initial byte and the argument of a data item.
+     *
+     * @param major    major type
+     * @param argument argument, unsigned
+     */
+    private void head(int major, long argument) {
+        reserve(MAX_HEAD_BYTES);
+        int type = major << 5;
+        if (argument >= 0 && argument < 24) {
+            buf.put((byte) (type | argument));
+        } else if (argument >>> 8 == 0) {
+            buf.put((byte) (type | 24));
+            buf.put((byte) argument);
+        } else if (argument >>> 16 == 0) {
+            buf.put((byte) (type | 25));
+            buf.putShort((short) argument);
+        } else if (argument >>> 32 == 0) {
+            buf.put((byte) (type | 26));
+            buf.putInt((int) argument);
+        } else {
+            buf.put((byte) (type | 27));
+            buf.putLong(argument);
+        }
+    }
+
+    private void number(long value) {
+        if (value >= 0) {
+            head(UNSIGNED, value);
+        } else {
+            head(NEGATIVE, -1 - value);
+        }
+    }
+
+    private void number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new NumberFormatException("Invalid number: " + value);
+        }
+        reserve(MAX_HEAD_BYTES);
+        float f = (float) value;
+        if (f == value) {
+            buf.put(FLOAT);
+            buf.putFloat(f);
+        } else {
+            buf.put(DOUBLE);
+            buf.putDouble(value);
+        }
+    }
+
+    private void number(BigInteger value) {
+        if (value.bitLength() < Long.SIZE) {
+            number(value.longValue());
+            return;
+        }
+        boolean negative = value.signum() < 0;
+        // a negative bignum encodes -1 - n
+        byte[] bytes = (negative ? value.not() : value).toByteArray();
+        int off = bytes[0] == 0 ? 1 : 0;
+        head(TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_BIGNUM);
+        head(BYTES, bytes.length - off);
+        bytes(bytes, off, bytes.length - off);
+    }
+
+    private void number(BigDecimal value) {
+        head(TAG, TAG_DECIMAL_FRACTION);
+        head(FIXED_ARRAY, 2);
+        number(-(long) value.scale());
+        number(value.unscaledValue());
+    }
+
+    /**
+     * Write a text string.
+     *
+     * @param value value
+     */
+    private void string(String value) {
+        int len = value.length();
+        long size = len;
+        boolean ascii = true;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+                if (c < 0x800) {
+                    size += 1;
+                } else if (Character.isHighSurrogate(c) && i + 1 < len
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    size += 2;
+                    i++;
+                } else if (!Character.isSurrogate(c)) {
+                    size += 2;
+                }
+            }
+        }
+        head(TEXT, size);
+        if (ascii) {
+            // fast path
+            for (int i = 0; i < len; i++) {
+                if (!buf.hasRemaining()) {
+                    reserve(1);
+                }
+                buf.put((byte) value.charAt(i));
+            }
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (buf.remaining() < MAX_CHAR_BYTES) {
+                reserve(MAX_CHAR_BYTES);
+            }
+            if (c < 0x80) {
+                buf.put((byte) c);
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // malformed, same replacement as the charset encoder
+                buf.put((byte) '?');
+            } else {
+                buf.put((byte) (0xE0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private void bytes(byte[] b, int off, int len) {
+        while (len > 0) {
+            reserve(1);
+            int n = Math.min(len, buf.remaining());
+            buf.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void reserve(int n) {
+        if (buf == null || buf.remaining() < n) {
+            buf = stream.reserve(n);
+        }
+    }
+
+    private JsonGenerator commit() {
+        buf = null;
+        stream.commit();
+        return this;
+    }
+}
@@ -4,28 +4,21 @@ import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import jakarta.json.JsonArray;
 import jakarta.json.JsonException;
-import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
-import jakarta.json.JsonString;
 import jakarta.json.JsonValue;
 import jakarta.json.stream.JsonGenerator;
 
 @SuppressWarnings("resource")
 final class JsonGeneratorRx implements JsonGenerator {
 
-    private static final Event START_OBJECT = new Event(EventType.START_OBJECT, null, null);
-    private static final Event START_ARRAY = new Event(EventType.START_ARRAY, null, null);
-    private static final Event END = new Event(EventType.END, null, null);
-    private static final Event TRUE = new Event(EventType.TRUE, null, null);
-    private static final Event FALSE = new Event(EventType.FALSE, null, null);
-    private static final Event NULL = new Event(EventType.NULL, null, null);
-
     enum EventType {
         START_OBJECT,
         NAMED_START_OBJECT,
@@ -40,6 +33,7 @@ final class JsonGeneratorRx implements JsonGenerator {
         NAMED_DOUBLE,
         NAMED_BOOLEAN,
         NAMED_NULL,
+        NAMED_VALUE,
         END,
         STRING,
         BIG_DECIMAL,
@@ -49,169 +43,456 @@ final class JsonGeneratorRx implements JsonGenerator {
         DOUBLE,
         NULL,
         TRUE,
-        FALSE
+        FALSE,
+        VALUE,
+        TAPE,
+        DOCUMENT,
+        FLUSH,
+        POLICY_FLUSH,
+        CLOSE;
+
+        private static final EventType[] VALUES = values();
+
+        /**
+         * Get the event type for a value stored in {@link JsonEventBuffer}.
+         *
+         * @param type stored type
+         * @return event type
+         */
+        static EventType of(byte type) {
+            return VALUES[type];
+        }
+
+        /**
+         * Get the value stored in {@link JsonEventBuffer} for this event type.
+         *
+         * @return stored type
+         */
+        byte code() {
+            return (byte) ordinal();
+        }
+    }
+
+    /**
+     * Position in a {@link JsonArray} or {@link JsonObject} being expanded.
+     * Array cursors iterate over values, object cursors iterate over members.
+     */
+    private record Cursor(Iterator<?> iterator) {
     }
 
-    private record Event(EventType type, String name, Object value) {
+    /**
+     * Source of events pulled when all the queued events have been written and more can be written.
+     */
+    interface Source {
+
+        /**
+         * Add more events to the generator.
+         *
+         * @return {@code true} if events were added, {@code false} if none are available yet
+         */
+        boolean pull();
     }
 
-    private final Queue<Event> queue = new ArrayDeque<>();
+    private final JsonEventBuffer events = JsonEventBuffer.acquire();
+    private final AtomicInteger wip = new AtomicInteger();
     private final JsonMultiOutputStream stream;
-    private final JsonGenerator generator;
+    private final JsonStreamMetrics metrics;
+    private final int maxEvents;
+    private final Function<OutputStream, JsonGenerator> factory;
+    private final boolean tapes;
+    private OutputStream output;
+    private JsonGenerator delegate;
+    private Source source;
+    // allocated on first use, only JSON-P values are expanded
+    private Deque<Cursor> cursors;
+    // compiled object being replayed
+    private JsonTape.Replay replay;
+    private volatile boolean ended;
+    private volatile boolean canceled;
+    private volatile boolean released;
+    private volatile boolean spillRequested;
+    private int peakDepth;
+
+    JsonGeneratorRx(JsonMultiOutputStream stream, Function<OutputStream, JsonGenerator> factory, boolean tapes) {
+        this.factory = factory;
+        this.tapes = tapes;
+        this.output = stream;
+        this.metrics = stream.metrics();
+        this.maxEvents = stream.maxEvents();
+        this.stream = stream.onRequest((n, demand) -> onRequest()).generator(this);
+    }
+
+    /**
+     * Write a sequence of top-level documents instead of a single document.
+     * Must be invoked before writing any event.
+     *
+     * @return this generator
+     * @see #endDocument(byte[])
+     */
+    JsonGeneratorRx documents() {
+        this.output = stream.documentView();
+        return this;
+    }
 
-    JsonGeneratorRx(JsonMultiOutputStream stream, Function<OutputStream, JsonGenerator> factory) {
-        this.generator = factory.apply(stream);
-        this.stream = stream.onRequest((n, demand) -> onRequest());
+    /**
+     * End the current top-level document and write the given separator.
+     * The separator is not written in {@link JsonFormat#CBOR}, the documents form a CBOR sequence.
+     *
+     * @param separator separator
+     */
+    void endDocument(byte[] separator) {
+        event(EventType.DOCUMENT, null, separator);
+    }
+
+    /**
+     * Test if the immutable compiled types can be written with {@link #writeTape(JsonTape.Replay)}.
+     *
+     * @return {@code true} if the events are encoded by a {@link JsonGeneratorUtf8}
+     */
+    boolean tapes() {
+        return tapes;
+    }
+
+    /**
+     * Write an immutable compiled object as a single event, the object is replayed from its tape when the event is
+     * drained. The replay yields between the nested objects, like the expansion of JSON-P values.
+     *
+     * @param replay replay
+     */
+    void writeTape(JsonTape.Replay replay) {
+        event(EventType.TAPE, null, replay);
+    }
+
+    /**
+     * Flush the stream once all the queued events have been written, regardless of its {@link JsonFlushPolicy}.
+     */
+    void flushStream() {
+        event(EventType.FLUSH);
+    }
+
+    /**
+     * Pull the events from the given source instead of closing the generator when {@link #close()} is invoked.
+     * The source is responsible for invoking {@link #end()}.
+     *
+     * @param source source
+     * @return this generator
+     */
+    JsonGeneratorRx source(Source source) {
+        this.source = source;
+        return this;
     }
 
+    /**
+     * Close the generator once all the queued events have been written.
+     */
+    void end() {
+        event(EventType.CLOSE);
+        ended = true;
+    }
+
+    /**
+     * Stop generating, the queued events are discarded and the next write throws {@link JsonCanceledException}.
+     */
+    void cancel() {
+        canceled = true;
+        onRequest();
+    }
+
+    /**
+     * Write the queued events while there is demand.
+     */
+    void drain() {
+        onRequest();
+    }
+
+    /**
+     * Drain the events, one thread at a time.
+     * Signals received while draining, including re-entrant ones, are merged into another iteration of the loop.
+     */
     private void onRequest() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            drainLoop();
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainLoop() {
+        if (released) {
+            return;
+        }
+        if (stream.terminated()) {
+            // canceled or failed
+            release();
+            return;
+        }
         stream.drain();
-        while (stream.ready() && !queue.isEmpty()) {
-            Event event = queue.poll();
+        stream.flushIfDue();
+        // over the memory budget, write the events regardless of the demand so that the chunks can be spilled
+        boolean spill = spillRequested;
+        while (spill || stream.ready()) {
             try {
-                switch (event.type) {
-                    case START_OBJECT -> generator.writeStartObject();
-                    case START_ARRAY -> generator.writeStartArray();
-                    case END -> generator.writeEnd();
-                    case NULL -> generator.writeNull();
-                    case TRUE -> generator.write(true);
-                    case FALSE -> generator.write(false);
-                    case INT -> generator.write((int) event.value);
-                    case DOUBLE -> generator.write((double) event.value);
-                    case LONG -> generator.write((long) event.value);
-                    case STRING -> generator.write((String) event.value);
-                    case BIG_DECIMAL -> generator.write((BigDecimal) event.value);
-                    case BIG_INTEGER -> generator.write((BigInteger) event.value);
-                    case NAMED_START_OBJECT -> generator.writeStartObject(event.name);
-                    case NAMED_START_ARRAY -> generator.writeStartArray(event.name);
-                    case NAMED_NULL -> generator.writeNull(event.name);
-                    case NAMED_BOOLEAN -> generator.write(event.name, (boolean) event.value);
-                    case NAMED_INT -> generator.write(event.name, (int) event.value);
-                    case NAMED_DOUBLE -> generator.write(event.name, (double) event.value);
-                    case NAMED_LONG -> generator.write(event.name, (long) event.value);
-                    case NAMED_STRING -> generator.write(event.name, (String) event.value);
-                    case NAMED_BIG_DECIMAL -> generator.write(event.name, (BigDecimal) event.value);
-                    case NAMED_BIG_INTEGER -> generator.write(event.name, (BigInteger) event.value);
-                    case NAMED_KEY -> generator.writeKey(event.name);
+                if (replay != null) {
+                    if (replay.step((JsonGeneratorUtf8) delegate())) {
+                        replay = null;
+                    }
+                    continue;
+                }
+                if (cursors != null && !cursors.isEmpty()) {
+                    expand(cursors.peek());
+                    continue;
+                }
+                if (events.isEmpty()) {
+                    if (source != null && stream.ready() && source.pull()) {
+                        continue;
+                    }
+                    break;
+                }
+                String name = events.name();
+                Object value = events.value();
+                long bits = events.bits();
+                EventType type = EventType.of(events.type());
+                switch (type) {
+                    case VALUE, NAMED_VALUE -> expand(name, (JsonValue) value);
+                    case TAPE -> replay = (JsonTape.Replay) value;
+                    case DOCUMENT -> {
+                        if (delegate != null) {
+                            delegate.close();
+                            recycleDelegate();
+                        }
+                        if (stream.format() == JsonFormat.JSON) {
+                            stream.write((byte[]) value);
+                        }
+                    }
+                    case FLUSH -> stream.flushNow();
+                    case POLICY_FLUSH -> {
+                        if (delegate != null) {
+                            // writes the bytes buffered by the delegate, flushes the stream unless writing documents
+                            delegate.flush();
+                        }
+                        if (delegate == null || output != stream) {
+                            stream.flush();
+                        }
+                    }
+                    case CLOSE -> {
+                        if (output == stream) {
+                            delegate().close();
+                        } else {
+                            if (delegate != null) {
+                                delegate.close();
+                            }
+                            stream.close();
+                        }
+                    }
+                    default -> write(delegate(), type, name, value, bits);
                 }
-            } catch (JsonException ex) {
+                events.remove();
+            } catch (RuntimeException ex) {
                 stream.fail(ex);
+                release();
+                return;
             }
         }
-        if (queue.isEmpty()) {
-            if (stream.ready()) {
-                generator.close();
-            }
-            if (stream.closed()) {
+        if (spill) {
+            spillRequested = false;
+        }
+        if (!released && (!events.isEmpty() || replay != null || cursors != null && !cursors.isEmpty())) {
+            stream.stall();
+        }
+        if (stream.closed()) {
+            stream.drain();
+            if (stream.drained()) {
                 stream.complete();
+                release();
             }
         }
     }
 
-    private JsonGenerator event(Event event) {
-        queue.add(event);
-        return this;
+    private static void write(JsonGenerator generator, EventType type, String name, Object value, long bits) {
+        switch (type) {
+            case START_OBJECT -> generator.writeStartObject();
+            case START_ARRAY -> generator.writeStartArray();
+            case END -> generator.writeEnd();
+            case NULL -> generator.writeNull();
+            case TRUE -> generator.write(true);
+            case FALSE -> generator.write(false);
+            case INT -> generator.write((int) bits);
+            case DOUBLE -> generator.write(Double.longBitsToDouble(bits));
+            case LONG -> generator.write(bits);
+            case STRING -> generator.write((String) value);
+            case BIG_DECIMAL -> generator.write((BigDecimal) value);
+            case BIG_INTEGER -> generator.write((BigInteger) value);
+            case NAMED_START_OBJECT -> generator.writeStartObject(name);
+            case NAMED_START_ARRAY -> generator.writeStartArray(name);
+            case NAMED_NULL -> generator.writeNull(name);
+            case NAMED_BOOLEAN -> generator.write(name, bits != 0);
+            case NAMED_INT -> generator.write(name, (int) bits);
+            case NAMED_DOUBLE -> generator.write(name, Double.longBitsToDouble(bits));
+            case NAMED_LONG -> generator.write(name, bits);
+            case NAMED_STRING -> generator.write(name, (String) value);
+            case NAMED_BIG_DECIMAL -> generator.write(name, (BigDecimal) value);
+            case NAMED_BIG_INTEGER -> generator.write(name, (BigInteger) value);
+            case NAMED_KEY -> generator.writeKey(name);
+            default -> throw new IllegalStateException("Unexpected event: " + type);
+        }
+    }
+
+    private JsonGenerator delegate() {
+        if (delegate == null) {
+            delegate = factory.apply(output);
+        }
+        return delegate;
+    }
+
+    /**
+     * Recycle the state of this generator, the generator is not used after this method is invoked.
+     * The queued events are recycled only if the producer is done, otherwise they are left to the garbage collector.
+     */
+    private void release() {
+        if (!released) {
+            released = true;
+            cursors = null;
+            replay = null;
+            recycleDelegate();
+            if (ended) {
+                events.release();
+            }
+            stream.releaseBuffer();
+        }
+    }
+
+    private void recycleDelegate() {
+        if (delegate instanceof JsonGeneratorUtf8 generator) {
+            generator.recycle();
+        }
+        delegate = null;
+    }
+
+    /**
+     * Write the next element of the given cursor, or end the structure if the cursor is exhausted.
+     *
+     * @param cursor cursor
+     */
+    private void expand(Cursor cursor) {
+        if (cursor.iterator.hasNext()) {
+            Object next = cursor.iterator.next();
+            if (next instanceof Map.Entry<?, ?> member) {
+                expand((String) member.getKey(), (JsonValue) member.getValue());
+            } else {
+                expand(null, (JsonValue) next);
+            }
+        } else {
+            cursors.pop();
+            delegate().writeEnd();
+        }
+    }
+
+    /**
+     * Write a value, structures are started and a cursor is pushed to expand the elements just-in-time.
+     *
+     * @param name  name, {@code null} if not in an object context
+     * @param value value
+     */
+    private void expand(String name, JsonValue value) {
+        switch (value.getValueType()) {
+            case ARRAY -> {
+                if (name == null) {
+                    delegate().writeStartArray();
+                } else {
+                    delegate().writeStartArray(name);
+                }
+                cursors().push(new Cursor(((JsonArray) value).iterator()));
+            }
+            case OBJECT -> {
+                if (name == null) {
+                    delegate().writeStartObject();
+                } else {
+                    delegate().writeStartObject(name);
+                }
+                cursors().push(new Cursor(((JsonObject) value).entrySet().iterator()));
+            }
+            default -> {
+                if (name == null) {
+                    delegate().write(value);
+                } else {
+                    delegate().write(name, value);
+                }
+            }
+        }
+    }
+
+    private Deque<Cursor> cursors() {
+        if (cursors == null) {
+            cursors = new ArrayDeque<>();
+        }
+        return cursors;
+    }
+
+    private JsonGenerator event(EventType eventType) {
+        return event(eventType, null, null, 0);
     }
 
     private JsonGenerator event(EventType eventType, String name, Object value) {
-        return event(new Event(eventType, name, value));
+        return event(eventType, name, value, 0);
+    }
+
+    private JsonGenerator event(EventType eventType, String name, long bits) {
+        return event(eventType, name, null, bits);
+    }
+
+    private JsonGenerator event(EventType eventType, String name, Object value, long bits) {
+        if (canceled) {
+            throw JsonCanceledException.INSTANCE;
+        }
+        if (released) {
+            return this;
+        }
+        events.add(eventType.code(), name, value, bits);
+        metrics.eventQueued();
+        int size = events.size();
+        if (size > peakDepth) {
+            peakDepth = size;
+            metrics.queueDepth(peakDepth);
+        }
+        if (maxEvents > 0 && size >= maxEvents) {
+            spillRequested = true;
+            onRequest();
+        }
+        return this;
     }
 
     @Override
     public void close() {
-        // no-op
+        if (source == null) {
+            end();
+        }
     }
 
+    /**
+     * Flush the stream according to its {@link JsonFlushPolicy} once all the queued events have been written.
+     */
     @Override
     public void flush() {
-        // no-op
+        event(EventType.POLICY_FLUSH);
     }
 
     @Override
     public JsonGenerator write(String name, JsonValue value) {
-        // This method expands complex values into simple values (events)
-        // The goal of this class is to avoid storing the serialized bytes in memory,
-        // however the current approach stores the whole entity as events, which isn't better
-        // TODO expand just-in-time
-        switch (value.getValueType()) {
-            case ARRAY:
-                JsonArray array = (JsonArray) value;
-                writeStartArray(name);
-                for (JsonValue child : array) {
-                    write(child);
-                }
-                writeEnd();
-                break;
-            case OBJECT:
-                JsonObject object = (JsonObject) value;
-                writeStartObject(name);
-                for (Map.Entry<String, JsonValue> member : object.entrySet()) {
-                    write(member.getKey(), member.getValue());
-                }
-                writeEnd();
-                break;
-            case STRING:
-                write(name, ((JsonString) value).getString());
-                break;
-            case NUMBER:
-                write(name, value.toString());
-                break;
-            case TRUE:
-                write(name, true);
-                break;
-            case FALSE:
-                write(name, false);
-                break;
-            case NULL:
-                writeNull(name);
-                break;
-        }
-        return this;
+        // complex values are expanded just-in-time, see #expand(String, JsonValue)
+        return event(EventType.NAMED_VALUE, name, value);
     }
 
     @Override
     public JsonGenerator write(JsonValue value) {
-        switch (value.getValueType()) {
-            case ARRAY:
-                JsonArray array = (JsonArray) value;
-                writeStartArray();
-                for (JsonValue child : array) {
-                    write(child);
-                }
-                writeEnd();
-                break;
-            case OBJECT:
-                JsonObject object = (JsonObject) value;
-                writeStartObject();
-                for (Map.Entry<String, JsonValue> member : object.entrySet()) {
-                    write(member.getKey(), member.getValue());
-                }
-                writeEnd();
-                break;
-            case STRING:
-                JsonString str = (JsonString) value;
-                write(str.getString());
-                break;
-            case NUMBER:
-                JsonNumber number = (JsonNumber) value;
-                write(number.toString());
-                break;
-            case TRUE:
-                write(true);
-                break;
-            case FALSE:
-                write(false);
-                break;
-            case NULL:
-                writeNull();
-                break;
-        }
-        return this;
+        return event(EventType.VALUE, null, value);
     }
 
     @Override
     public JsonGenerator writeStartObject() {
-        return event(START_OBJECT);
+        return event(EventType.START_OBJECT);
     }
 
     @Override
@@ -226,7 +507,7 @@ final class JsonGeneratorRx implements JsonGenerator {
 
     @Override
     public JsonGenerator writeStartArray() {
-        return event(START_ARRAY);
+        return event(EventType.START_ARRAY);
     }
 
     @Override
@@ -251,7 +532,7 @@ final class JsonGeneratorRx implements JsonGenerator {
 
     @Override
     public JsonGenerator write(String name, int value) {
-        return event(EventType.NAMED_INT, name, value);
+        return event(EventType.NAMED_INT, name, (long) value);
     }
 
     @Override
@@ -261,12 +542,12 @@ final class JsonGeneratorRx implements JsonGenerator {
 
     @Override
     public JsonGenerator write(String name, double value) {
-        return event(EventType.NAMED_DOUBLE, name, value);
+        return event(EventType.NAMED_DOUBLE, name, Double.doubleToRawLongBits(value));
     }
 
     @Override
     public JsonGenerator write(String name, boolean value) {
-        return event(EventType.NAMED_BOOLEAN, name, value);
+        return event(EventType.NAMED_BOOLEAN, name, value ? 1L : 0L);
     }
 
     @Override
@@ -276,7 +557,7 @@ final class JsonGeneratorRx implements JsonGenerator {
 
     @Override
     public JsonGenerator writeEnd() {
-        return event(END);
+        return event(EventType.END);
     }
 
     @Override
@@ -296,7 +577,7 @@ final class JsonGeneratorRx implements JsonGenerator {
 
     @Override
     public JsonGenerator write(int value) {
-        return event(EventType.INT, null, value);
+        return event(EventType.INT, null, (long) value);
     }
 
     @Override
@@ -306,16 +587,16 @@ final class JsonGeneratorRx implements JsonGenerator {
 
     @Override
     public JsonGenerator write(double value) {
-        return event(EventType.DOUBLE, null, value);
+        return event(EventType.DOUBLE, null, Double.doubleToRawLongBits(value));
     }
 
     @Override
     public JsonGenerator write(boolean value) {
-        return event(value ? TRUE : FALSE);
+        return event(value ? EventType.TRUE : EventType.FALSE);
     }
 
     @Override
     public JsonGenerator writeNull() {
-        return event(NULL);
+        return event(EventType.NULL);
     }
 }
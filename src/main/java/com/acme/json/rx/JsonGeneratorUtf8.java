@@ -0,0 +1,562 @@
+package com.acme.json.rx;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonGenerationException;
+import jakarta.json.stream.JsonGenerator;
+
+/**
+ * Generator that encodes directly into the chunk buffers of a {@link JsonMultiOutputStream}.
+ * <p>
+ * Strings are escaped and encoded to UTF-8 one character at a time, with a fast path for ASCII characters. There is
+ * no intermediate {@code char[]} and no charset encoder. Property names are copied from a {@link JsonNameCache}.
+ * <p>
+ * The generators used by {@link JsonGeneratorRx} are recycled per thread once closed, see {@link #recycle()}.
+ */
+final class JsonGeneratorUtf8 implements JsonGenerator {
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ESCAPES = new byte[128];
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+    private static final int MAX_CHAR_BYTES = 6;
+    private static final int MAX_LONG_BYTES = 20;
+    private static final JsonRecycler<JsonGeneratorUtf8> RECYCLER = JsonRecycler.create(16);
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            ESCAPES[i] = 'u';
+        }
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['\t'] = 't';
+    }
+
+    private JsonMultiOutputStream stream;
+    private boolean document;
+    private JsonNameCache names;
+    private byte[] scopes = new byte[16];
+    private int depth;
+    private boolean first = true;
+    private boolean key;
+    private ByteBuffer buf;
+
+    /**
+     * Create a new generator.
+     *
+     * @param os    output, must be a {@link JsonMultiOutputStream} or a document view of it
+     * @param names cache of encoded names
+     */
+    JsonGeneratorUtf8(OutputStream os, JsonNameCache names) {
+        init(os, names);
+    }
+
+    /**
+     * Get a generator recycled by the current thread, or create a new generator.
+     *
+     * @param os    output, must be a {@link JsonMultiOutputStream} or a document view of it
+     * @param names cache of encoded names
+     * @return generator
+     */
+    static JsonGeneratorUtf8 acquire(OutputStream os, JsonNameCache names) {
+        JsonGeneratorUtf8 generator = RECYCLER.acquire();
+        if (generator == null) {
+            return new JsonGeneratorUtf8(os, names);
+        }
+        generator.init(os, names);
+        return generator;
+    }
+
+    /**
+     * Reset this generator and return it to the pool of the current thread.
+     * The generator must not be used after this method is invoked, writes fail until it is acquired again.
+     */
+    void recycle() {
+        if (stream == null) {
+            throw new IllegalStateException("Generator already recycled");
+        }
+        stream = null;
+        names = null;
+        buf = null;
+        depth = 0;
+        first = true;
+        key = false;
+        RECYCLER.release(this);
+    }
+
+    private void init(OutputStream os, JsonNameCache names) {
+        this.names = names;
+        if (os instanceof JsonMultiOutputStream.DocumentView view) {
+            this.stream = view.stream();
+            this.document = true;
+        } else if (os instanceof JsonMultiOutputStream multiStream) {
+            this.stream = multiStream;
+            this.document = false;
+        } else {
+            throw new IllegalArgumentException("Not an instance of " + JsonMultiOutputStream.class);
+        }
+    }
+
+    @Override
+    public JsonGenerator writeStartObject() {
+        value();
+        put((byte) '{');
+        push(OBJECT);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeStartObject(String name) {
+        name(name);
+        put((byte) '{');
+        push(OBJECT);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeKey(String name) {
+        name(name);
+        key = true;
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeStartArray() {
+        value();
+        put((byte) '[');
+        push(ARRAY);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeStartArray(String name) {
+        name(name);
+        put((byte) '[');
+        push(ARRAY);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, JsonValue value) {
+        writeKey(name);
+        return write(value);
+    }
+
+    @Override
+    public JsonGenerator write(String name, String value) {
+        name(name);
+        string(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, BigInteger value) {
+        name(name);
+        ascii(value.toString());
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, BigDecimal value) {
+        name(name);
+        ascii(value.toString());
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, int value) {
+        name(name);
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, long value) {
+        name(name);
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, double value) {
+        name(name);
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(String name, boolean value) {
+        name(name);
+        ascii(value ? "true" : "false");
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeNull(String name) {
+        name(name);
+        ascii("null");
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeEnd() {
+        if (depth == 0) {
+            throw new JsonGenerationException("writeEnd() cannot be called in no context");
+        }
+        if (key) {
+            throw new JsonGenerationException("writeEnd() cannot be called after writeKey()");
+        }
+        reserve(1);
+        put(scopes[depth] == OBJECT ? (byte) '}' : (byte) ']');
+        depth--;
+        first = false;
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(JsonValue value) {
+        switch (value.getValueType()) {
+            case ARRAY -> {
+                writeStartArray();
+                for (JsonValue child : (JsonArray) value) {
+                    write(child);
+                }
+                writeEnd();
+            }
+            case OBJECT -> {
+                writeStartObject();
+                for (Map.Entry<String, JsonValue> member : ((JsonObject) value).entrySet()) {
+                    write(member.getKey(), member.getValue());
+                }
+                writeEnd();
+            }
+            case STRING -> write(((JsonString) value).getString());
+            case NUMBER -> {
+                value();
+                ascii(value.toString());
+                commit();
+            }
+            case TRUE -> write(true);
+            case FALSE -> write(false);
+            case NULL -> writeNull();
+        }
+        return this;
+    }
+
+    @Override
+    public JsonGenerator write(String value) {
+        value();
+        string(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(BigDecimal value) {
+        value();
+        ascii(value.toString());
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(BigInteger value) {
+        value();
+        ascii(value.toString());
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(int value) {
+        value();
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(long value) {
+        value();
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(double value) {
+        value();
+        number(value);
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator write(boolean value) {
+        value();
+        ascii(value ? "true" : "false");
+        return commit();
+    }
+
+    @Override
+    public JsonGenerator writeNull() {
+        value();
+        ascii("null");
+        return commit();
+    }
+
+    @Override
+    public void close() {
+        if (depth != 0 || first) {
+            throw new JsonGenerationException("Generating incomplete JSON");
+        }
+        if (!document) {
+            stream.close();
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (!document) {
+            stream.flush();
+        }
+    }
+
+    /**
+     * Get the escape character of the given character.
+     *
+     * @param c character
+     * @return {@code 0} if the character does not need escaping, {@code u} for a unicode escape sequence, or the
+     * character to write after a backslash
+     */
+    static byte escape(char c) {
+        return c < 0x80 ? ESCAPES[c] : 0;
+    }
+
+    /**
+     * Prepare to write a value, writing a separator if needed.
+     */
+    void value() {
+        reserve(1);
+        if (key) {
+            key = false;
+            return;
+        }
+        switch (scopes[depth]) {
+            case OBJECT -> throw new JsonGenerationException("Name required to write a value in an object");
+            case ARRAY -> {
+                if (!first) {
+                    put((byte) ',');
+                }
+                first = false;
+            }
+            default -> {
+                if (!first) {
+                    throw new JsonGenerationException("Cannot generate more than one JSON text");
+                }
+                first = false;
+            }
+        }
+    }
+
+    /**
+     * Write a name and a colon, writing a separator if needed.
+     *
+     * @param name name
+     */
+    private void name(String name) {
+        if (scopes[depth] != OBJECT || key) {
+            throw new JsonGenerationException("Name can only be written in an object and before a value");
+        }
+        reserve(1);
+        if (!first) {
+            put((byte) ',');
+        }
+        first = false;
+        byte[] bytes = names.get(name);
+        if (bytes != null && bytes.length <= stream.chunkSize()) {
+            reserve(bytes.length);
+            buf.put(bytes);
+        } else {
+            string(name);
+            reserve(1);
+            put((byte) ':');
+        }
+    }
+
+    private void push(byte scope) {
+        if (++depth == scopes.length) {
+            byte[] newScopes = new byte[depth << 1];
+            System.arraycopy(scopes, 0, newScopes, 0, depth);
+            scopes = newScopes;
+        }
+        scopes[depth] = scope;
+        first = true;
+    }
+
+    /**
+     * Write a quoted and escaped string.
+     *
+     * @param value value
+     */
+    void string(String value) {
+        reserve(1);
+        put((byte) '"');
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (buf.remaining() < MAX_CHAR_BYTES) {
+                reserve(MAX_CHAR_BYTES);
+            }
+            if (c < 0x80) {
+                byte escape = ESCAPES[c];
+                if (escape == 0) {
+                    // ASCII fast path
+                    buf.put((byte) c);
+                } else if (escape == 'u') {
+                    buf.put((byte) '\\');
+                    buf.put((byte) 'u');
+                    buf.put((byte) '0');
+                    buf.put((byte) '0');
+                    buf.put(HEX[c >> 4]);
+                    buf.put(HEX[c & 0xF]);
+                } else {
+                    buf.put((byte) '\\');
+                    buf.put(escape);
+                }
+            } else if (c < 0x800) {
+                buf.put((byte) (0xC0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buf.put((byte) (0xF0 | (cp >> 18)));
+                buf.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buf.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                // malformed, same replacement as the charset encoder
+                buf.put((byte) '?');
+            } else {
+                buf.put((byte) (0xE0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buf.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        reserve(1);
+        put((byte) '"');
+    }
+
+    /**
+     * Write a string that only contains ASCII characters that do not need escaping.
+     *
+     * @param value value
+     */
+    private void ascii(String value) {
+        int len = value.length();
+        for (int i = 0; i < len; i++) {
+            if (buf == null || !buf.hasRemaining()) {
+                reserve(1);
+            }
+            buf.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Write a number.
+     *
+     * @param value value
+     */
+    void number(long value) {
+        reserve(MAX_LONG_BYTES);
+        if (value == Long.MIN_VALUE) {
+            ascii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            buf.put((byte) '-');
+            value = -value;
+        }
+        int len = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            len++;
+        }
+        int pos = buf.position();
+        for (int i = pos + len - 1; i >= pos; i--) {
+            buf.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buf.position(pos + len);
+    }
+
+    /**
+     * Write a number.
+     *
+     * @param value value
+     */
+    void number(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new NumberFormatException("Invalid number: " + value);
+        }
+        ascii(Double.toString(value));
+    }
+
+    /**
+     * Write pre-encoded bytes, e.g. the byte runs of a {@link JsonTape}.
+     *
+     * @param bytes bytes
+     */
+    void raw(byte[] bytes) {
+        if (buf != null && buf.remaining() >= bytes.length) {
+            buf.put(bytes);
+            return;
+        }
+        // a run larger than the chunk is split
+        for (int off = 0; off < bytes.length; ) {
+            reserve(1);
+            int n = Math.min(buf.remaining(), bytes.length - off);
+            buf.put(bytes, off, n);
+            off += n;
+        }
+    }
+
+    /**
+     * Write a pre-encoded byte.
+     *
+     * @param b byte
+     */
+    void raw(byte b) {
+        reserve(1);
+        buf.put(b);
+    }
+
+    private void put(byte b) {
+        buf.put(b);
+    }
+
+    private void reserve(int n) {
+        if (buf == null || buf.remaining() < n) {
+            if (stream == null) {
+                throw new IllegalStateException("Generator recycled");
+            }
+            buf = stream.reserve(n);
+        }
+    }
+
+    /**
+     * Emit the current chunk if it reached the high watermark.
+     *
+     * @return this generator
+     */
+    JsonGenerator commit() {
+        buf = null;
+        stream.commit();
+        return this;
+    }
+}
@@ -0,0 +1,331 @@
+package com.acme.json.rx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Flow;
+import java.util.function.Predicate;
+
+import io.helidon.common.GenericType;
+import io.helidon.common.http.DataChunk;
+import io.helidon.common.http.MediaType;
+import io.helidon.common.reactive.Single;
+import io.helidon.media.common.MediaSupport;
+import io.helidon.media.common.MessageBodyWriter;
+import io.helidon.media.common.MessageBodyWriterContext;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.stream.JsonGenerator;
+import org.eclipse.yasson.YassonJsonb;
+
+/**
+ * Media support that streams the JSON entities sent with {@code res.send(entity)}.
+ * <p>
+ * Entities are serialized with a {@link JsonMultiWriter} into a {@link JsonMultiOutputStream}. Entities whose
+ * estimated size is below {@link Builder#bufferThreshold(int)} are serialized with Yasson into a single pre-sized
+ * buffer instead. The size of records, final beans, collections, maps, arrays and simple values is estimated without
+ * serializing, other entities are always streamed. Compiled writers are used if enabled with
+ * {@link Builder#compiled(boolean)}.
+ * <p>
+ * Character sequences, raw content (e.g. {@code byte[]}, {@link InputStream}, {@link Path}) and publishers are left to
+ * the other writers.
+ * <p>
+ * If enabled with {@link Builder#cbor(boolean)}, entities are streamed as CBOR when the request accepts
+ * {@code application/cbor} before {@code application/json}.
+ * <pre>{@code
+ * WebServer.builder()
+ *         .addMediaSupport(JsonMediaSupport.create(provider, jsonb))
+ *         .routing(r -> r.get("/", (req, res) -> res.send(entity)));
+ * }</pre>
+ */
+public final class JsonMediaSupport implements MediaSupport {
+
+    private static final int DEFAULT_BUFFER_THRESHOLD = 4 * 1024;
+    private static final int SCALAR_SIZE = 8;
+    private static final MediaType APPLICATION_CBOR = MediaType.create("application", "cbor");
+    private static final Predicate<MediaType> JSON_OR_CBOR = MediaType.JSON_PREDICATE.or(APPLICATION_CBOR::test);
+    // types that are not JSON entities
+    private static final List<Class<?>> UNSUPPORTED_TYPES = List.of(
+            CharSequence.class,
+            byte[].class,
+            ByteBuffer.class,
+            DataChunk.class,
+            InputStream.class,
+            Reader.class,
+            ReadableByteChannel.class,
+            Path.class,
+            File.class,
+            Flow.Publisher.class,
+            Throwable.class);
+
+    private final JsonProviderRx provider;
+    private final Jsonb jsonb;
+    private final JsonMultiWriter writer;
+    private final int bufferThreshold;
+    private final JsonBufferPool pool;
+    private final boolean cbor;
+
+    private JsonMediaSupport(Builder builder) {
+        this.provider = builder.provider;
+        this.jsonb = builder.jsonb;
+        this.writer = JsonMultiWriter.builder()
+                .provider(provider)
+                .jsonb(jsonb)
+                .compiled(builder.compiled)
+                .build();
+        this.bufferThreshold = builder.bufferThreshold;
+        this.pool = builder.pool;
+        this.cbor = builder.cbor;
+    }
+
+    /**
+     * Create a new media support.
+     *
+     * @param provider provider used to generate the entities
+     * @param jsonb    jsonb used to serialize the entities, must use the same provider
+     * @return media support
+     */
+    public static JsonMediaSupport create(JsonProviderRx provider, Jsonb jsonb) {
+        return builder().provider(provider).jsonb(jsonb).build();
+    }
+
+    /**
+     * Create a new builder.
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public Collection<MessageBodyWriter<?>> writers() {
+        return List.of(new Writer());
+    }
+
+    private Flow.Publisher<DataChunk> write(Object entity, JsonFormat format) {
+        long estimate = format == JsonFormat.JSON ? estimate(entity, bufferThreshold) : Long.MAX_VALUE;
+        if (estimate <= bufferThreshold && jsonb instanceof YassonJsonb yasson) {
+            Buffer buffer = new Buffer((int) (estimate + estimate / 4));
+            JsonGenerator generator = provider.delegate.createGenerator(buffer);
+            JsonTypeWriter typeWriter = writer.typeWriter(entity);
+            if (typeWriter != null) {
+                typeWriter.write(generator, entity);
+            } else {
+                yasson.toJson(entity, generator);
+            }
+            generator.close();
+            return Single.just(buffer.chunk());
+        }
+        return JsonMultiOutputStream.builder()
+                .pool(pool)
+                .format(format)
+                .build()
+                .produce(out -> writer.toJson(entity, out));
+    }
+
+    /**
+     * Estimate the serialized size of a value, the estimate stops once it exceeds the given maximum.
+     *
+     * @param value value
+     * @param max   maximum
+     * @return estimated size in bytes, greater than {@code max} if the size cannot be estimated
+     */
+    private long estimate(Object value, long max) {
+        if (value == null) {
+            return SCALAR_SIZE;
+        }
+        if (value instanceof CharSequence chars) {
+            return chars.length() + 2L;
+        }
+        if (value instanceof Enum<?> e) {
+            return e.name().length() + 2L;
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return SCALAR_SIZE;
+        }
+        if (value instanceof Collection<?> collection) {
+            long size = 2;
+            for (Object element : collection) {
+                size += 1 + estimate(element, max - size);
+                if (size > max) {
+                    break;
+                }
+            }
+            return size;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long size = 2;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                size += String.valueOf(entry.getKey()).length() + 4 + estimate(entry.getValue(), max - size);
+                if (size > max) {
+                    break;
+                }
+            }
+            return size;
+        }
+        if (value instanceof Object[] array) {
+            return estimate(Arrays.asList(array), max);
+        }
+        if (value.getClass().isArray()) {
+            return 2L + (SCALAR_SIZE + 1L) * Array.getLength(value);
+        }
+        JsonTypeWriter typeWriter = provider.typeWriter(value.getClass());
+        if (typeWriter != null) {
+            return typeWriter.estimate(value, max, this::estimate);
+        }
+        return max + 1;
+    }
+
+    /**
+     * Writer of any entity but the unsupported types.
+     */
+    private final class Writer implements MessageBodyWriter<Object> {
+
+        @Override
+        public PredicateResult accept(GenericType<?> type, MessageBodyWriterContext context) {
+            Class<?> rawType = type.rawType();
+            for (Class<?> unsupported : UNSUPPORTED_TYPES) {
+                if (unsupported.isAssignableFrom(rawType)) {
+                    return PredicateResult.NOT_SUPPORTED;
+                }
+            }
+            return PredicateResult.COMPATIBLE;
+        }
+
+        @Override
+        public Flow.Publisher<DataChunk> write(Single<?> single,
+                                               GenericType<?> type,
+                                               MessageBodyWriterContext context) {
+
+            MediaType contentType = context.findAccepted(cbor ? JSON_OR_CBOR : MediaType.JSON_PREDICATE,
+                    MediaType.APPLICATION_JSON);
+            context.contentType(contentType);
+            JsonFormat format = cbor && APPLICATION_CBOR.test(contentType) ? JsonFormat.CBOR : JsonFormat.JSON;
+            return single.flatMap(entity -> JsonMediaSupport.this.write(entity, format));
+        }
+    }
+
+    /**
+     * Pre-sized buffer of a small entity.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer(int size) {
+            super(size);
+        }
+
+        DataChunk chunk() {
+            return DataChunk.create(ByteBuffer.wrap(buf, 0, count));
+        }
+    }
+
+    /**
+     * Builder of {@link JsonMediaSupport}.
+     */
+    public static final class Builder {
+
+        private JsonProviderRx provider;
+        private Jsonb jsonb;
+        private int bufferThreshold = DEFAULT_BUFFER_THRESHOLD;
+        private JsonBufferPool pool = JsonBufferPool.create();
+        private boolean cbor;
+        private boolean compiled;
+
+        private Builder() {
+        }
+
+        /**
+         * Use compiled writers for the supported types, the default is {@code false}.
+         *
+         * @param compiled {@code true} to use compiled writers
+         * @return this builder
+         * @see JsonMultiWriter.Builder#compiled(boolean)
+         */
+        public Builder compiled(boolean compiled) {
+            this.compiled = compiled;
+            return this;
+        }
+
+        /**
+         * Stream the entities as CBOR when requested by the {@code Accept} header, the default is {@code false}.
+         *
+         * @param cbor {@code true} to negotiate CBOR
+         * @return this builder
+         * @see JsonFormat#CBOR
+         */
+        public Builder cbor(boolean cbor) {
+            this.cbor = cbor;
+            return this;
+        }
+
+        /**
+         * Set the provider used to generate the entities.
+         *
+         * @param provider provider
+         * @return this builder
+         */
+        public Builder provider(JsonProviderRx provider) {
+            this.provider = provider;
+            return this;
+        }
+
+        /**
+         * Set the jsonb used to serialize the entities, must use the same provider.
+         *
+         * @param jsonb jsonb
+         * @return this builder
+         */
+        public Builder jsonb(Jsonb jsonb) {
+            this.jsonb = jsonb;
+            return this;
+        }
+
+        /**
+         * Set the estimated size under which an entity is serialized into a single buffer, the default is
+         * {@code 4KB}. Use {@code 0} to always stream.
+         *
+         * @param bufferThreshold size in bytes
+         * @return this builder
+         */
+        public Builder bufferThreshold(int bufferThreshold) {
+            if (bufferThreshold < 0) {
+                throw new IllegalArgumentException("Invalid buffer threshold: " + bufferThreshold);
+            }
+            this.bufferThreshold = bufferThreshold;
+            return this;
+        }
+
+        /**
+         * Set the pool of buffers of the streamed entities, the default is {@link JsonBufferPool#create()}.
+         *
+         * @param pool pool
+         * @return this builder
+         */
+        public Builder pool(JsonBufferPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Build the media support.
+         *
+         * @return JsonMediaSupport
+         */
+        public JsonMediaSupport build() {
+            if (provider == null || jsonb == null) {
+                throw new IllegalStateException("Provider and jsonb are required");
+            }
+            return new JsonMediaSupport(this);
+        }
+    }
+}
@@ -1,12 +1,22 @@
 package com.acme.json.rx;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.util.Deque;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import io.helidon.common.http.DataChunk;
 import io.helidon.common.reactive.EmittingPublisher;
@@ -87,21 +97,125 @@ public class JsonMultiOutputStream extends OutputStream implements Multi<DataChu
         abstract boolean isTerminated();
     }
 
-    private static final int BUFFER_SIZE = 4 * 1024;
     private static final DataChunk FLUSH_CHUNK = DataChunk.create(true);
+    // marks the position of the spilled chunks in the overflow buffer
+    private static final DataChunk SPILLED = DataChunk.create(false);
 
     private final EmittingPublisher<DataChunk> emitter = EmittingPublisher.create();
     private final Deque<DataChunk> buffer = new ConcurrentLinkedDeque<>();
-    private final ByteBuffer byteBuffer = ByteBuffer.allocate(BUFFER_SIZE);
     private final AtomicReference<State> state = new AtomicReference<>(State.INIT);
-
-    private JsonMultiOutputStream() {
-        emitter.onCancel(() -> state.updateAndGet(s -> s.isTerminated() ? s : State.CANCELED));
-        emitter.onRequest((n, demand) -> state.compareAndSet(State.INIT, State.READY_TO_EMIT));
+    private final JsonBufferPool pool;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final Executor executor;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean bufferReleased = new AtomicBoolean();
+    private final AtomicLong stallStart = new AtomicLong();
+    private final JsonStreamMetrics metrics;
+    private final JsonCompressor compressor;
+    private final JsonFlushPolicy flushPolicy;
+    private final JsonSpill spill;
+    private final JsonFormat format;
+    private final AtomicLong parkedBytes = new AtomicLong();
+    private final AtomicInteger parkedChunks = new AtomicInteger();
+    // guards the spill file and the parked chunks against the termination of the stream
+    private final Object spillLock = new Object();
+    private JsonSpillFile spillFile;
+    private boolean spilling;
+    private final AtomicBoolean flushTimer = new AtomicBoolean();
+    private volatile boolean flushDue;
+    private long unflushed;
+    private final long createdNanos = System.nanoTime();
+    private volatile boolean emitted;
+    private volatile Consumer<? super OutputStream> producer;
+    private volatile Thread producerThread;
+    private final AtomicReference<Runnable> cancelCallback = new AtomicReference<>();
+    private JsonGeneratorRx generator;
+    private ByteBuffer byteBuffer;
+
+    private JsonMultiOutputStream(Builder builder) {
+        this.pool = builder.pool;
+        this.lowWatermark = builder.lowWatermark;
+        this.highWatermark = builder.highWatermark;
+        this.executor = builder.executor;
+        this.metrics = builder.metrics;
+        this.flushPolicy = builder.flushPolicy;
+        this.spill = builder.spill;
+        this.format = builder.format;
+        this.byteBuffer = pool.acquire();
+        this.compressor = builder.compression != null
+                ? new JsonCompressor(builder.compression, pool, this::doPublish)
+                : null;
+        metrics.streamCreated();
+        emitter.onCancel(() -> {
+            if (!state.getAndUpdate(s -> s.isTerminated() ? s : State.CANCELED).isTerminated()) {
+                metrics.streamCanceled();
+            }
+            releaseBuffered();
+            abortCompressor();
+            LockSupport.unpark(producerThread);
+            runCancelCallback();
+            JsonGeneratorRx generator = this.generator;
+            if (generator != null) {
+                generator.cancel();
+            }
+        });
+        emitter.onRequest((n, demand) -> {
+            state.compareAndSet(State.INIT, State.READY_TO_EMIT);
+            if (stallStart.get() != 0) {
+                long start = stallStart.getAndSet(0);
+                if (start != 0) {
+                    metrics.stalled(System.nanoTime() - start);
+                }
+            }
+            if (executor != null) {
+                startProducerMaybe();
+                LockSupport.unpark(producerThread);
+            }
+        });
     }
 
     public static JsonMultiOutputStream create() {
-        return new JsonMultiOutputStream();
+        return builder().build();
+    }
+
+    public static JsonMultiOutputStream create(JsonBufferPool pool) {
+        return builder().pool(pool).build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Write the entity using the given producer, e.g. {@code stream.produce(out -> jsonb.toJson(entity, out))}.
+     * <p>
+     * In event queue mode the producer is invoked immediately and the generator events are queued until requested.
+     * In blocking mode the producer is invoked on the executor when the first chunk is requested, and writes park the
+     * producer thread until chunks are requested.
+     * <p>
+     * Once the stream is canceled, writes throw {@link JsonCanceledException} to stop the producer. The exception is
+     * not propagated.
+     *
+     * @param producer producer
+     * @return this stream
+     */
+    public JsonMultiOutputStream produce(Consumer<? super OutputStream> producer) {
+        if (executor == null) {
+            try {
+                producer.accept(this);
+            } catch (RuntimeException ex) {
+                if (!JsonCanceledException.isCause(ex)) {
+                    throw ex;
+                }
+            }
+        } else {
+            this.producer = producer;
+            if (state.get() != State.INIT) {
+                startProducerMaybe();
+            }
+        }
+        return this;
     }
 
     JsonMultiOutputStream onRequest(BiConsumer<Long, Long> requestCallback) {
@@ -109,6 +223,50 @@ public class JsonMultiOutputStream extends OutputStream implements Multi<DataChu
         return this;
     }
 
+    /**
+     * Set a callback invoked once when the stream is canceled or failed, e.g. to cancel the source of the items.
+     *
+     * @param cancelCallback callback
+     * @return this stream
+     */
+    JsonMultiOutputStream whenCanceled(Runnable cancelCallback) {
+        this.cancelCallback.set(cancelCallback);
+        return this;
+    }
+
+    JsonMultiOutputStream generator(JsonGeneratorRx generator) {
+        this.generator = generator;
+        return this;
+    }
+
+    JsonGeneratorRx generator() {
+        return generator;
+    }
+
+    JsonStreamMetrics metrics() {
+        return metrics;
+    }
+
+    JsonFormat format() {
+        return format;
+    }
+
+    /**
+     * Get the maximum number of generator events to queue before writing them regardless of the demand.
+     *
+     * @return event count, {@code 0} if unbounded
+     */
+    int maxEvents() {
+        return spill != null && executor == null ? spill.maxEvents() : 0;
+    }
+
+    /**
+     * Record that output is pending and there is no demand, until the next request.
+     */
+    void stall() {
+        stallStart.compareAndSet(0, System.nanoTime());
+    }
+
     @Override
     public void subscribe(Flow.Subscriber<? super DataChunk> subscriber) {
         emitter.subscribe(subscriber);
@@ -116,49 +274,191 @@ public class JsonMultiOutputStream extends OutputStream implements Multi<DataChu
 
     @Override
     public void write(byte[] b) {
-        publishBufferedMaybe();
-        publish(b, 0, b.length);
+        write(b, 0, b.length);
     }
 
     @Override
     public void write(byte[] b, int off, int len) {
-        publishBufferedMaybe();
-        publish(b, off, len);
+        if (len >= byteBuffer.capacity()) {
+            // larger than a chunk, emit as separate chunks
+            publishBufferedMaybe();
+            if (compressor != null) {
+                unflushed += len;
+                compressor.write(ByteBuffer.wrap(b, off, len));
+                return;
+            }
+            int size = byteBuffer.capacity();
+            while (len >= size) {
+                byteBuffer.put(b, off, size);
+                off += size;
+                len -= size;
+                publish();
+            }
+            // the remainder is coalesced with the next writes
+        }
+        if (len > byteBuffer.remaining() && byteBuffer.position() >= lowWatermark) {
+            // full enough, emit instead of splitting the write
+            publish();
+        }
+        while (len > 0) {
+            int n = Math.min(len, byteBuffer.remaining());
+            byteBuffer.put(b, off, n);
+            off += n;
+            len -= n;
+            publishFullMaybe();
+        }
     }
 
     @Override
     public void write(int b) {
-        if (!byteBuffer.hasRemaining()) {
-            publish();
-        }
         byteBuffer.put((byte) b);
+        publishFullMaybe();
     }
 
     @Override
     public void close() {
-        flush();
+        if (state.get() == State.CLOSED || state.get().isTerminated()) {
+            return;
+        }
+        if (compressor != null) {
+            publishBufferedMaybe();
+            compressor.finish();
+        }
+        flushNow();
         state.updateAndGet(s -> s.isTerminated() ? s : State.CLOSED);
     }
 
+    /**
+     * Flush according to the {@link JsonFlushPolicy}.
+     */
     @Override
     public void flush() {
+        switch (flushPolicy.kind()) {
+            case IMMEDIATE -> flushNow();
+            case BYTES -> {
+                if (unflushed + byteBuffer.position() >= flushPolicy.value()) {
+                    flushNow();
+                }
+            }
+            case INTERVAL -> {
+                if (flushDue) {
+                    flushNow();
+                } else if (flushTimer.compareAndSet(false, true)) {
+                    flushPolicy.schedule(() -> {
+                        flushDue = true;
+                        flushTimer.set(false);
+                        // the generator drain loop flushes even if nothing else is written
+                        JsonGeneratorRx generator = this.generator;
+                        if (generator != null) {
+                            generator.drain();
+                        }
+                    });
+                }
+            }
+            case NEVER -> {
+                // only when closed
+            }
+        }
+    }
+
+    /**
+     * Emit the buffered bytes followed by a flush chunk, regardless of the {@link JsonFlushPolicy}.
+     */
+    void flushNow() {
+        unflushed = 0;
+        flushDue = false;
         drain();
         publishBufferedMaybe();
+        if (compressor != null) {
+            compressor.flush();
+        }
         doPublish(FLUSH_CHUNK);
     }
 
+    /**
+     * Flush if the interval of {@link JsonFlushPolicy#interval(java.time.Duration)} has elapsed.
+     * Must be invoked by the writing thread.
+     */
+    void flushIfDue() {
+        if (flushDue) {
+            flushNow();
+        }
+    }
+
     boolean ready() {
         return state.get() == State.READY_TO_EMIT && emitter.hasRequests();
     }
 
+    /**
+     * Get a view of this stream that ignores {@link OutputStream#close()} and {@link OutputStream#flush()}.
+     * This is used to write a document without closing the stream, see {@link JsonGeneratorRx#documents()}.
+     *
+     * @return view
+     */
+    OutputStream documentView() {
+        return new DocumentView(this);
+    }
+
+    /**
+     * Get the current chunk buffer with at least the given number of bytes remaining.
+     * The current chunk is emitted if it does not have enough space.
+     *
+     * @param n number of bytes, must not exceed the chunk size
+     * @return buffer, only valid until {@link #commit()} is invoked
+     */
+    ByteBuffer reserve(int n) {
+        if (byteBuffer.remaining() < n) {
+            if (n > byteBuffer.capacity()) {
+                throw new IllegalArgumentException("Chunk size too small: " + byteBuffer.capacity());
+            }
+            publish();
+        }
+        return byteBuffer;
+    }
+
+    /**
+     * Get the chunk size.
+     *
+     * @return chunk size in bytes
+     */
+    int chunkSize() {
+        return pool.bufferSize();
+    }
+
+    /**
+     * Emit the current chunk if it reached the high watermark after writing to the buffer returned by
+     * {@link #reserve(int)}.
+     */
+    void commit() {
+        publishFullMaybe();
+    }
+
+    boolean blocking() {
+        return executor != null;
+    }
+
     boolean closed() {
         return state.get() == State.CLOSED;
     }
 
+    boolean terminated() {
+        return state.get().isTerminated();
+    }
+
+    boolean drained() {
+        return buffer.isEmpty();
+    }
+
     void drain() {
         while (state.get().canEmit() && emitter.hasRequests() && !buffer.isEmpty()) {
-            DataChunk chunk = buffer.poll();
-            if (chunk != null && !emitter.emit(chunk)) {
+            DataChunk chunk;
+            try {
+                chunk = buffer.peek() == SPILLED ? replay() : unpark();
+            } catch (IOException ex) {
+                fail(ex);
+                break;
+            }
+            if (chunk != null && !emit(chunk)) {
                 fail(new IllegalStateException("Unable to emit chunk"));
                 break;
             }
@@ -167,12 +467,183 @@ public class JsonMultiOutputStream extends OutputStream implements Multi<DataChu
 
     void complete() {
         emitter.complete();
-        state.updateAndGet(s -> s.isTerminated() ? s : State.COMPLETED);
+        if (!state.getAndUpdate(s -> s.isTerminated() ? s : State.COMPLETED).isTerminated()) {
+            releaseBuffer();
+            metrics.streamCompleted();
+        }
+        closeSpill();
     }
 
     void fail(Throwable t) {
         emitter.fail(t);
-        state.updateAndGet(s -> s.isTerminated() ? s : State.FAILED);
+        if (!state.getAndUpdate(s -> s.isTerminated() ? s : State.FAILED).isTerminated()) {
+            if (executor == null && generator == null) {
+                // otherwise released by the writing thread
+                releaseBuffer();
+            }
+            metrics.streamFailed();
+        }
+        releaseBuffered();
+        abortCompressor();
+        releaseGenerator();
+        runCancelCallback();
+    }
+
+    private void abortCompressor() {
+        if (compressor != null) {
+            compressor.abort();
+        }
+    }
+
+    private void runCancelCallback() {
+        Runnable callback = cancelCallback.getAndSet(null);
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Return the chunk buffer to the pool, at most once.
+     * Must be invoked by the writing thread once it is done, writing to this stream afterwards fails.
+     */
+    void releaseBuffer() {
+        if (bufferReleased.compareAndSet(false, true)) {
+            pool.release(byteBuffer);
+            byteBuffer = null;
+        }
+    }
+
+    /**
+     * Let the generator recycle its state once failed, the generator writes to this stream in its drain loop.
+     */
+    private void releaseGenerator() {
+        JsonGeneratorRx generator = this.generator;
+        if (generator != null) {
+            generator.drain();
+        }
+    }
+
+    private void releaseBuffered() {
+        synchronized (spillLock) {
+            DataChunk chunk;
+            while ((chunk = unpark()) != null) {
+                chunk.release();
+            }
+            closeSpill();
+        }
+    }
+
+    private void closeSpill() {
+        synchronized (spillLock) {
+            JsonSpillFile file = spillFile;
+            if (file != null) {
+                spillFile = null;
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Park a chunk until there is demand, the chunk is spilled if the memory budget is exceeded.
+     * The chunk is released if the stream is terminated, the parked chunks have been released already. Without a
+     * spill budget the chunk is parked without the lock, the state is checked again once it is in the buffer.
+     *
+     * @param chunk chunk
+     */
+    private void park(DataChunk chunk) {
+        metrics.chunkParked();
+        stall();
+        if (spill == null) {
+            buffer.add(chunk);
+            metrics.chunkBuffered(parkedChunks.incrementAndGet());
+            if (state.get().isTerminated()) {
+                // terminated after the parked chunks were released
+                releaseBuffered();
+            }
+            return;
+        }
+        synchronized (spillLock) {
+            if (state.get().isTerminated()) {
+                chunk.release();
+                return;
+            }
+            if (spilling || spill.overBudget(parkedBytes.get())) {
+                spill(chunk);
+                return;
+            }
+            int bytes = chunk.remaining();
+            parkedBytes.addAndGet(bytes);
+            spill.parked(bytes);
+            buffer.add(chunk);
+            metrics.chunkBuffered(parkedChunks.incrementAndGet());
+        }
+    }
+
+    private DataChunk unpark() {
+        DataChunk chunk = buffer.poll();
+        if (chunk != null && chunk != SPILLED) {
+            parkedChunks.decrementAndGet();
+            metrics.chunkUnbuffered();
+        }
+        if (chunk != null && spill != null) {
+            int bytes = chunk.remaining();
+            parkedBytes.addAndGet(-bytes);
+            spill.parked(-bytes);
+        }
+        return chunk;
+    }
+
+    /**
+     * Append a chunk to the spill file, all the chunks are spilled until the file is drained to preserve the order.
+     * Must be invoked with the spill lock held.
+     *
+     * @param chunk chunk
+     */
+    private void spill(DataChunk chunk) {
+        try {
+            if (spillFile == null) {
+                JsonSpillFile file = spill.open();
+                if (state.get().isTerminated()) {
+                    // terminated while opening
+                    file.close();
+                    return;
+                }
+                spillFile = file;
+            }
+            if (!spilling) {
+                spilling = true;
+                buffer.add(SPILLED);
+            }
+            metrics.spilled(spillFile.write(chunk.data()));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            chunk.release();
+        }
+    }
+
+    /**
+     * Read the next chunk from the spill file.
+     * The last chunk of the file is flushed, the chunks published after it are parked in memory again.
+     *
+     * @return chunk
+     * @throws IOException if an I/O error occurs
+     */
+    private DataChunk replay() throws IOException {
+        synchronized (spillLock) {
+            JsonSpillFile file = spillFile;
+            if (file == null) {
+                // canceled
+                return null;
+            }
+            ByteBuffer data = file.isEmpty() ? ByteBuffer.allocate(0) : file.read(pool.bufferSize());
+            boolean last = file.isEmpty();
+            if (last) {
+                buffer.poll();
+                spilling = false;
+            }
+            return DataChunk.create(last, true, data);
+        }
     }
 
     private void publishBufferedMaybe() {
@@ -181,25 +652,326 @@ public class JsonMultiOutputStream extends OutputStream implements Multi<DataChu
         }
     }
 
-    private void publish(byte[] b, int off, int len) {
-        ByteBuffer emitBuffer = ByteBuffer.allocate(len - off);
-        emitBuffer.put(b, off, len);
-        emitBuffer.flip();
-        doPublish(DataChunk.create(emitBuffer));
+    private void publishFullMaybe() {
+        if (byteBuffer.position() >= highWatermark || !byteBuffer.hasRemaining()) {
+            publish();
+        }
     }
 
     private void publish() {
+        unflushed += byteBuffer.position();
         byteBuffer.flip();
-        ByteBuffer emitBuffer = ByteBuffer.allocate(byteBuffer.remaining());
-        emitBuffer.put(byteBuffer);
-        emitBuffer.flip();
-        doPublish(DataChunk.create(emitBuffer));
-        byteBuffer.clear();
+        if (compressor != null) {
+            compressor.write(byteBuffer);
+            byteBuffer.clear();
+        } else {
+            ByteBuffer emitBuffer = byteBuffer;
+            byteBuffer = pool.acquire();
+            doPublish(pool.chunk(false, emitBuffer));
+        }
+        if (flushDue) {
+            flushNow();
+        }
     }
 
     private void doPublish(DataChunk emitChunk) {
-        if (!ready() || !emitter.emit(emitChunk)) {
-            buffer.add(emitChunk);
+        if (executor != null) {
+            awaitDemand();
+        }
+        State current = state.get();
+        if (current == State.CANCELED) {
+            emitChunk.release();
+            throw JsonCanceledException.INSTANCE;
+        }
+        if (executor != null) {
+            // the producer waited for the demand, a chunk that cannot be emitted is an error
+            if (current.isTerminated()) {
+                emitChunk.release();
+                throw new IllegalStateException("Stream terminated: " + current);
+            }
+            if (!emit(emitChunk)) {
+                emitChunk.release();
+                IllegalStateException ex = new IllegalStateException("Unable to emit chunk");
+                fail(ex);
+                throw ex;
+            }
+        } else if (!ready() || !emit(emitChunk)) {
+            park(emitChunk);
+        }
+    }
+
+    private boolean emit(DataChunk chunk) {
+        int bytes = chunk.remaining();
+        if (!emitter.emit(chunk)) {
+            return false;
+        }
+        if (!emitted) {
+            emitted = true;
+            metrics.firstChunk(System.nanoTime() - createdNanos);
+        }
+        metrics.chunkEmitted(bytes);
+        return true;
+    }
+
+    private void awaitDemand() {
+        if (emitter.hasRequests() || state.get().isTerminated()) {
+            return;
+        }
+        stall();
+        while (!emitter.hasRequests() && !state.get().isTerminated()) {
+            LockSupport.park(this);
+        }
+    }
+
+    private void startProducerMaybe() {
+        Consumer<? super OutputStream> producer = this.producer;
+        if (producer != null && started.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                producerThread = Thread.currentThread();
+                try {
+                    producer.accept(this);
+                    close();
+                    complete();
+                } catch (Throwable t) {
+                    if (!JsonCanceledException.isCause(t)) {
+                        fail(t);
+                    }
+                } finally {
+                    producerThread = null;
+                    releaseBuffer();
+                }
+            });
+        }
+    }
+
+    /**
+     * Output of a document, closing a document does not close the stream.
+     */
+    static final class DocumentView extends OutputStream {
+
+        private final JsonMultiOutputStream stream;
+
+        private DocumentView(JsonMultiOutputStream stream) {
+            this.stream = stream;
+        }
+
+        JsonMultiOutputStream stream() {
+            return stream;
+        }
+
+        @Override
+        public void write(int b) {
+            stream.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            stream.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            // no-op, see JsonGeneratorRx#flushStream()
+        }
+
+        @Override
+        public void close() {
+            // no-op, see JsonGeneratorRx#endDocument(byte[])
+        }
+    }
+
+    /**
+     * Builder of {@link JsonMultiOutputStream}.
+     * <p>
+     * Writes are coalesced into chunks of {@link #chunkSize(int)} bytes. A chunk is emitted as soon as it holds
+     * {@link #highWatermark(int)} bytes. A write that does not fit in the current chunk is appended to the
+     * current chunk, unless the current chunk already holds {@link #lowWatermark(int)} bytes in which case the current
+     * chunk is emitted first. A write larger than a chunk is split into pooled chunks of exactly the chunk size, the
+     * remainder is coalesced with the next writes.
+     */
+    public static final class Builder {
+
+        private JsonBufferPool pool;
+        private int chunkSize = -1;
+        private int lowWatermark = -1;
+        private int highWatermark = -1;
+        private Executor executor;
+        private JsonStreamMetrics metrics = JsonStreamMetrics.global();
+        private JsonCompression compression;
+        private JsonFlushPolicy flushPolicy = JsonFlushPolicy.immediate();
+        private JsonSpill spill;
+        private JsonFormat format = JsonFormat.JSON;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the format written by the generators created for this stream, the default is {@link JsonFormat#JSON}.
+         *
+         * @param format format
+         * @return this builder
+         */
+        public Builder format(JsonFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * Spill the parked chunks to a file when the given budget is exceeded, the default is {@code null} (no
+         * budget). This is ignored in blocking mode, where the producer parks instead.
+         *
+         * @param spill spill budget, {@code null} to keep all the parked chunks in memory
+         * @return this builder
+         */
+        public Builder spill(JsonSpill spill) {
+            this.spill = spill;
+            return this;
+        }
+
+        /**
+         * Set the policy applied when {@link JsonMultiOutputStream#flush()} is invoked, the default is
+         * {@link JsonFlushPolicy#immediate()}.
+         *
+         * @param flushPolicy flush policy
+         * @return this builder
+         */
+        public Builder flushPolicy(JsonFlushPolicy flushPolicy) {
+            this.flushPolicy = flushPolicy;
+            return this;
+        }
+
+        /**
+         * Compress the emitted chunks, the default is {@code null} (no compression).
+         *
+         * @param compression compression, {@code null} to disable compression
+         * @return this builder
+         * @see JsonCompression#negotiate(String)
+         */
+        public Builder compression(JsonCompression compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * Set the metrics updated by the stream, the default is {@link JsonStreamMetrics#global()}.
+         *
+         * @param metrics metrics
+         * @return this builder
+         */
+        public Builder metrics(JsonStreamMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Enable or disable the blocking mode.
+         * In blocking mode the entity is written on a separate thread, straight through to the stream, and the
+         * writing thread parks while there is no demand. Virtual threads are used if available.
+         * <p>
+         * In event queue mode (default), the generator events are queued and written when chunks are requested.
+         *
+         * @param blocking {@code true} to enable the blocking mode
+         * @return this builder
+         * @see #produce(Consumer)
+         */
+        public Builder blocking(boolean blocking) {
+            this.executor = blocking ? ProducerExecutor.INSTANCE : null;
+            return this;
+        }
+
+        /**
+         * Enable the blocking mode with a custom executor.
+         *
+         * @param executor executor used to run the producer
+         * @return this builder
+         * @see #blocking(boolean)
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set the pool of buffers used to emit chunks.
+         * The buffer size of the pool determines the chunk size.
+         *
+         * @param pool pool
+         * @return this builder
+         */
+        public Builder pool(JsonBufferPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Set the target chunk size, the default is {@code 4KB}.
+         * This is ignored if a pool is set.
+         *
+         * @param chunkSize chunk size in bytes
+         * @return this builder
+         */
+        public Builder chunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Set the low watermark, the default is half the chunk size.
+         *
+         * @param lowWatermark low watermark in bytes
+         * @return this builder
+         */
+        public Builder lowWatermark(int lowWatermark) {
+            this.lowWatermark = lowWatermark;
+            return this;
+        }
+
+        /**
+         * Set the high watermark, the default is the chunk size.
+         *
+         * @param highWatermark high watermark in bytes
+         * @return this builder
+         */
+        public Builder highWatermark(int highWatermark) {
+            this.highWatermark = highWatermark;
+            return this;
+        }
+
+        /**
+         * Build the stream.
+         *
+         * @return JsonMultiOutputStream
+         */
+        public JsonMultiOutputStream build() {
+            if (pool == null) {
+                pool = chunkSize > 0 ? JsonBufferPool.create(chunkSize) : JsonBufferPool.create();
+            }
+            int size = pool.bufferSize();
+            if (highWatermark <= 0 || highWatermark > size) {
+                highWatermark = size;
+            }
+            if (lowWatermark < 0 || lowWatermark > highWatermark) {
+                lowWatermark = Math.min(size / 2, highWatermark);
+            }
+            return new JsonMultiOutputStream(this);
+        }
+    }
+
+    private static final class ProducerExecutor {
+
+        static final Executor INSTANCE = create();
+
+        private static Executor create() {
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (Executor) method.invoke(null);
+            } catch (ReflectiveOperationException ignored) {
+                return Executors.newCachedThreadPool(r -> {
+                    Thread thread = new Thread(r, "json-producer");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
         }
     }
 }
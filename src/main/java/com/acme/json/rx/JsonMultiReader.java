@@ -0,0 +1,256 @@
+package com.acme.json.rx;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.helidon.common.http.DataChunk;
+import io.helidon.common.reactive.EmittingPublisher;
+import io.helidon.common.reactive.Multi;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.spi.JsonProvider;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParsingException;
+import org.eclipse.yasson.YassonJsonb;
+
+/**
+ * Read the elements of a JSON array, or JSON lines, from chunks, e.g. a request body.
+ * <p>
+ * The chunks are parsed incrementally by a non-blocking parser. A chunk is requested only when the parser needs more
+ * input to complete the next element and elements have been requested. Each element is deserialized with Jsonb as
+ * soon as its bytes are available, the memory used is bounded by the largest element. {@code null} elements are
+ * skipped.
+ * <pre>{@code
+ * JsonMultiReader reader = JsonMultiReader.create(provider, jsonb);
+ * reader.array(req.content(), Employee.class).forEach(repository::save);
+ * }</pre>
+ */
+public final class JsonMultiReader {
+
+    private final JsonProvider provider;
+    private final Jsonb jsonb;
+
+    private JsonMultiReader(JsonProvider provider, Jsonb jsonb) {
+        this.provider = provider;
+        this.jsonb = jsonb;
+    }
+
+    /**
+     * Create a new reader.
+     *
+     * @param provider provider used to create the parsed values
+     * @param jsonb    jsonb used to deserialize the elements
+     * @return reader
+     */
+    public static JsonMultiReader create(JsonProvider provider, Jsonb jsonb) {
+        return new JsonMultiReader(provider, jsonb);
+    }
+
+    /**
+     * Read the elements of a top-level JSON array, e.g. {@code [item1,item2]}.
+     *
+     * @param source source of chunks
+     * @param type   element type
+     * @param <T>    element type
+     * @return elements
+     */
+    public <T> Multi<T> array(Flow.Publisher<DataChunk> source, Class<T> type) {
+        return Multi.create(subscriber -> new ElementReader<>(source, type, false).subscribe(subscriber));
+    }
+
+    /**
+     * Read a sequence of top-level JSON values, e.g. JSON lines.
+     *
+     * @param source source of chunks
+     * @param type   element type
+     * @param <T>    element type
+     * @return elements
+     */
+    public <T> Multi<T> lines(Flow.Publisher<DataChunk> source, Class<T> type) {
+        return Multi.create(subscriber -> new ElementReader<>(source, type, true).subscribe(subscriber));
+    }
+
+    private final class ElementReader<T> implements Flow.Subscriber<DataChunk> {
+
+        private final Queue<DataChunk> chunks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final EmittingPublisher<T> emitter = EmittingPublisher.create();
+        private final Flow.Publisher<DataChunk> source;
+        private final Class<T> type;
+        private final boolean lines;
+        private final JsonParserRx parser;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean done;
+        private volatile Throwable error;
+        private volatile boolean canceled;
+        private boolean requested;
+        private boolean started;
+        private boolean ended;
+
+        ElementReader(Flow.Publisher<DataChunk> source, Class<T> type, boolean lines) {
+            this.source = source;
+            this.type = type;
+            this.lines = lines;
+            this.parser = new JsonParserRx(provider, lines);
+            emitter.onRequest((n, demand) -> drain());
+            emitter.onCancel(() -> {
+                canceled = true;
+                drain();
+            });
+        }
+
+        void subscribe(Flow.Subscriber<? super T> subscriber) {
+            emitter.subscribe(subscriber);
+            source.subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (canceled) {
+                subscription.cancel();
+                return;
+            }
+            drain();
+        }
+
+        @Override
+        public void onNext(DataChunk chunk) {
+            chunks.add(chunk);
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            drain();
+        }
+
+        /**
+         * Parse the received chunks and emit the elements, one thread at a time.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                drainLoop();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainLoop() {
+            if (ended) {
+                return;
+            }
+            if (canceled) {
+                end();
+                return;
+            }
+            try {
+                while (true) {
+                    boolean complete = done;
+                    DataChunk chunk;
+                    while ((chunk = chunks.poll()) != null) {
+                        requested = false;
+                        try {
+                            for (ByteBuffer data : chunk.data()) {
+                                parser.feed(data);
+                            }
+                        } finally {
+                            chunk.release();
+                        }
+                    }
+                    if (complete) {
+                        Throwable ex = error;
+                        if (ex != null) {
+                            throw ex;
+                        }
+                        parser.endOfInput();
+                    }
+                    if (!emitter.hasRequests()) {
+                        return;
+                    }
+                    if (!started && !lines) {
+                        JsonParser.Event event = parser.poll();
+                        if (event == null) {
+                            request();
+                            return;
+                        }
+                        if (event != JsonParser.Event.START_ARRAY) {
+                            throw new JsonParsingException("Expected an array", parser.getLocation());
+                        }
+                        started = true;
+                    }
+                    int token = parser.peek();
+                    if (token < 0 && !parser.ended()) {
+                        request();
+                        return;
+                    }
+                    if (token < 0 || token == ']' && !lines) {
+                        // fails if the input is incomplete
+                        parser.poll();
+                        end();
+                        emitter.complete();
+                        return;
+                    }
+                    if (!parser.valueBuffered()) {
+                        request();
+                        return;
+                    }
+                    T element = read();
+                    if (element != null) {
+                        emitter.emit(element);
+                    }
+                }
+            } catch (Throwable ex) {
+                end();
+                emitter.fail(ex);
+            }
+        }
+
+        private T read() {
+            if (jsonb instanceof YassonJsonb yasson) {
+                return yasson.fromJson(parser, type);
+            }
+            return jsonb.fromJson(parser.readValue(), type);
+        }
+
+        /**
+         * Request a chunk, unless one is already requested.
+         */
+        private void request() {
+            Flow.Subscription subscription = this.subscription;
+            if (!requested && subscription != null) {
+                requested = true;
+                subscription.request(1);
+            }
+        }
+
+        private void end() {
+            ended = true;
+            parser.close();
+            if (!done) {
+                Flow.Subscription subscription = this.subscription;
+                if (subscription != null) {
+                    subscription.cancel();
+                }
+            }
+            DataChunk chunk;
+            while ((chunk = chunks.poll()) != null) {
+                chunk.release();
+            }
+        }
+    }
+}
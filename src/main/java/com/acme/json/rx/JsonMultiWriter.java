@@ -0,0 +1,799 @@
+package com.acme.json.rx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import io.helidon.common.http.DataChunk;
+import io.helidon.common.reactive.Multi;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.stream.JsonGenerator;
+import org.eclipse.yasson.YassonJsonb;
+
+/**
+ * Write the items of a {@link Flow.Publisher} as a JSON array, or as JSON lines.
+ * <p>
+ * Items are requested from the source only when the downstream has requested chunks and all the previous items
+ * have been written, the memory used is bounded by the number of items requested at once.
+ * <p>
+ * Records and final beans can be written with writers compiled once per type that emit the generator events
+ * directly, other types are serialized with Jsonb. Compiled writers follow the default Jsonb mapping (lexicographical
+ * order, {@code null} properties skipped) and skip types that use Jsonb annotations, but they ignore the
+ * {@code JsonbConfig} (naming strategy, property order, null values, adapters, serializers). They are disabled by
+ * default and must only be enabled with a Jsonb using the default configuration, see {@link Builder#compiled(boolean)}.
+ * <p>
+ * Lists larger than {@link Builder#parallel(int)} items can be serialized in parallel: the list is split into
+ * segments that are serialized on an executor and emitted in order. Segments are only serialized when chunks are
+ * requested, at most {@link Builder#parallelism(int)} segments are in memory at once. This applies to the lists
+ * passed to {@link #array(List)} and to the list properties of the entities passed to {@link #object(Object)}.
+ * <p>
+ * The streams are created with {@link Builder#streams(Supplier)}, e.g. to set the compression or the flush policy of a
+ * response, see {@link #withStreams(Supplier)}.
+ * <pre>{@code
+ * JsonMultiWriter writer = JsonMultiWriter.create(provider, jsonb);
+ * res.send(writer.array(Map.of("name", "Acme Corp."), "employees", employees));
+ * }</pre>
+ */
+public final class JsonMultiWriter {
+
+    private static final int DEFAULT_PREFETCH = 16;
+    private static final int DEFAULT_SEGMENT_SIZE = 1024;
+    private static final int SEGMENT_BUFFER_SIZE = 8 * 1024;
+    private static final byte[] NEWLINE = "\n".getBytes(StandardCharsets.UTF_8);
+
+    private final JsonProviderRx provider;
+    private final Jsonb jsonb;
+    private final int prefetch;
+    private final boolean compiled;
+    private final int parallelThreshold;
+    private final int segmentSize;
+    private final int parallelism;
+    private final Executor executor;
+    private final Supplier<JsonMultiOutputStream> streams;
+
+    private JsonMultiWriter(Builder builder) {
+        this.streams = builder.streams;
+        this.provider = builder.provider;
+        this.jsonb = builder.jsonb;
+        this.prefetch = builder.prefetch;
+        this.compiled = builder.compiled;
+        this.parallelThreshold = builder.parallelThreshold;
+        this.segmentSize = builder.segmentSize;
+        this.parallelism = builder.parallelism;
+        this.executor = builder.executor;
+    }
+
+    /**
+     * Create a new writer.
+     *
+     * @param provider provider used to generate the array
+     * @param jsonb    jsonb used to serialize the items, must use the same provider
+     * @return writer
+     */
+    public static JsonMultiWriter create(JsonProviderRx provider, Jsonb jsonb) {
+        return builder().provider(provider).jsonb(jsonb).build();
+    }
+
+    /**
+     * Create a new writer.
+     *
+     * @param provider provider used to generate the array
+     * @param jsonb    jsonb used to serialize the items, must use the same provider
+     * @param prefetch number of items requested at once
+     * @return writer
+     */
+    public static JsonMultiWriter create(JsonProviderRx provider, Jsonb jsonb, int prefetch) {
+        return builder().provider(provider).jsonb(jsonb).prefetch(prefetch).build();
+    }
+
+    /**
+     * Create a new builder.
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Create a copy of this writer that creates its streams with the given factory, e.g. to compress a response.
+     *
+     * @param streams factory of streams in event queue mode
+     * @return writer
+     */
+    public JsonMultiWriter withStreams(Supplier<JsonMultiOutputStream> streams) {
+        return builder()
+                .provider(provider)
+                .jsonb(jsonb)
+                .prefetch(prefetch)
+                .compiled(compiled)
+                .parallel(parallelThreshold)
+                .segmentSize(segmentSize)
+                .parallelism(parallelism)
+                .executor(executor)
+                .streams(streams)
+                .build();
+    }
+
+    /**
+     * Serialize a single value, e.g. {@code stream.produce(out -> writer.toJson(entity, out))}.
+     *
+     * @param value value
+     * @param os    output, a {@link JsonMultiOutputStream} to use a compiled writer
+     */
+    public void toJson(Object value, OutputStream os) {
+        JsonTypeWriter writer = typeWriter(value);
+        if (writer != null && os instanceof JsonMultiOutputStream) {
+            JsonGenerator generator = provider.createGenerator(os);
+            writer.write(generator, value);
+            generator.close();
+        } else {
+            jsonb.toJson(value, os);
+        }
+    }
+
+    /**
+     * Get the compiled writer of a value.
+     *
+     * @param value value
+     * @return writer, {@code null} if not compiled or if compiled writers are disabled
+     */
+    JsonTypeWriter typeWriter(Object value) {
+        return compiled && value != null ? provider.typeWriter(value.getClass()) : null;
+    }
+
+    /**
+     * Write an entity, its list properties of at least {@link Builder#parallel(int)} items are serialized in parallel.
+     * Only the properties of the entity are split, the lists of the nested objects are serialized sequentially.
+     * This requires a compiled writer for the entity type, Yasson, and a JSON stream; the entity is otherwise
+     * serialized sequentially with {@link #toJson(Object, OutputStream)}.
+     *
+     * @param value entity
+     * @return chunks
+     */
+    public Multi<DataChunk> object(Object value) {
+        JsonMultiOutputStream stream = stream();
+        JsonTypeWriter writer = typeWriter(value);
+        if (writer == null || parallelThreshold == Integer.MAX_VALUE || !parallel(stream)) {
+            return stream.produce(out -> toJson(value, out));
+        }
+        // serialize the entity with empty arrays in place of the large lists, split around the arrays
+        List<byte[]> pieces = new ArrayList<>();
+        List<List<?>> lists = new ArrayList<>();
+        Segment segment = new Segment();
+        JsonGenerator generator = provider.delegate.createGenerator(segment);
+        writer.write(generator, value, parallelThreshold, list -> {
+            generator.flush();
+            pieces.add(segment.toByteArray());
+            segment.reset();
+            lists.add(list);
+        });
+        generator.close();
+        pieces.add(segment.toByteArray());
+        return emit(stream, pieces, lists);
+    }
+
+    /**
+     * Write the items as a JSON array, e.g. {@code [item1,item2]}.
+     *
+     * @param source source of items
+     * @param <T>    item type
+     * @return chunks
+     */
+    public <T> Multi<DataChunk> array(Flow.Publisher<T> source) {
+        return array(Map.of(), null, source);
+    }
+
+    /**
+     * Write the items as a JSON array in a wrapper object, e.g. {@code {"field1":value1,"name":[item1,item2]}}.
+     *
+     * @param fields fields of the wrapper object written before the array
+     * @param name   name of the array in the wrapper object
+     * @param source source of items
+     * @param <T>    item type
+     * @return chunks
+     */
+    public <T> Multi<DataChunk> array(Map<String, ?> fields, String name, Flow.Publisher<T> source) {
+        return array(stream(), fields, name, source);
+    }
+
+    private <T> Multi<DataChunk> array(JsonMultiOutputStream stream,
+                                       Map<String, ?> fields,
+                                       String name,
+                                       Flow.Publisher<T> source) {
+
+        JsonGeneratorRx generator = (JsonGeneratorRx) provider.createGenerator(stream);
+        SourceSubscriber<T> subscriber = new SourceSubscriber<>(stream, generator, name != null, false, 0);
+        generator.source(subscriber);
+        if (name != null) {
+            generator.writeStartObject();
+            for (Map.Entry<String, ?> field : fields.entrySet()) {
+                generator.writeKey(field.getKey());
+                jsonb.toJson(field.getValue(), stream);
+            }
+            generator.writeStartArray(name);
+        } else {
+            generator.writeStartArray();
+        }
+        stream.whenCanceled(subscriber::cancel);
+        source.subscribe(subscriber);
+        return stream;
+    }
+
+    /**
+     * Write the items as a JSON array, e.g. {@code [item1,item2]}.
+     * The items are serialized in parallel if the list is large enough, see {@link Builder#parallel(int)}.
+     *
+     * @param items items
+     * @param <T>   item type
+     * @return chunks
+     */
+    public <T> Multi<DataChunk> array(List<T> items) {
+        return array(Map.of(), null, items);
+    }
+
+    /**
+     * Write the items as a JSON array in a wrapper object, e.g. {@code {"field1":value1,"name":[item1,item2]}}.
+     * The items are serialized in parallel if the list is large enough, see {@link Builder#parallel(int)}.
+     *
+     * @param fields fields of the wrapper object written before the array
+     * @param name   name of the array in the wrapper object
+     * @param items  items
+     * @param <T>    item type
+     * @return chunks
+     */
+    public <T> Multi<DataChunk> array(Map<String, ?> fields, String name, List<T> items) {
+        JsonMultiOutputStream stream = stream();
+        if (items.size() < parallelThreshold || items.isEmpty() || !parallel(stream)) {
+            return array(stream, fields, name, Multi.create(items));
+        }
+        // serialize the wrapper with an empty array and split it around the array
+        Segment wrapper = new Segment();
+        JsonGenerator generator = provider.delegate.createGenerator(wrapper);
+        if (name != null) {
+            generator.writeStartObject();
+            for (Map.Entry<String, ?> field : fields.entrySet()) {
+                generator.writeKey(field.getKey());
+                ((YassonJsonb) jsonb).toJson(field.getValue(), generator);
+            }
+            generator.writeStartArray(name).writeEnd().writeEnd();
+        } else {
+            generator.writeStartArray().writeEnd();
+        }
+        generator.close();
+        int suffix = name != null ? 2 : 1;
+        byte[] bytes = wrapper.toByteArray();
+        int split = bytes.length - suffix;
+        return emit(stream, List.of(Arrays.copyOf(bytes, split), Arrays.copyOfRange(bytes, split, bytes.length)),
+                List.of(items));
+    }
+
+    /**
+     * Emit the given pieces of serialized bytes, the items of each list are serialized in parallel and emitted
+     * between two pieces.
+     */
+    private Multi<DataChunk> emit(JsonMultiOutputStream stream, List<byte[]> pieces, List<List<?>> lists) {
+        SegmentEmitter emitter = new SegmentEmitter(stream, pieces, lists);
+        stream.onRequest((n, demand) -> emitter.drain());
+        stream.whenCanceled(emitter::cancel);
+        return stream;
+    }
+
+    private boolean parallel(JsonMultiOutputStream stream) {
+        return jsonb instanceof YassonJsonb && stream.format() == JsonFormat.JSON;
+    }
+
+    private JsonMultiOutputStream stream() {
+        JsonMultiOutputStream stream = streams.get();
+        if (stream.blocking()) {
+            throw new IllegalArgumentException("Blocking streams are not supported");
+        }
+        return stream;
+    }
+
+    /**
+     * Write the items as JSON lines, i.e. each item is a top-level document followed by {@code \n}.
+     *
+     * @param source source of items
+     * @param <T>    item type
+     * @return chunks
+     */
+    public <T> Multi<DataChunk> lines(Flow.Publisher<T> source) {
+        return lines(source, 0);
+    }
+
+    /**
+     * Write the items as JSON lines, i.e. each item is a top-level document followed by {@code \n}.
+     *
+     * @param source     source of items
+     * @param flushEvery number of items after which the stream is flushed, {@code 0} to flush only at the end
+     * @param <T>        item type
+     * @return chunks
+     */
+    public <T> Multi<DataChunk> lines(Flow.Publisher<T> source, int flushEvery) {
+        JsonMultiOutputStream stream = stream();
+        JsonGeneratorRx generator = ((JsonGeneratorRx) provider.createGenerator(stream)).documents();
+        SourceSubscriber<T> subscriber = new SourceSubscriber<>(stream, generator, false, true, flushEvery);
+        generator.source(subscriber);
+        stream.whenCanceled(subscriber::cancel);
+        source.subscribe(subscriber);
+        return stream;
+    }
+
+    /**
+     * Write the items as JSON lines, i.e. each item is a top-level document followed by {@code \n}.
+     *
+     * @param source     source of items
+     * @param flushEvery number of items after which the stream is flushed, {@code 0} to flush only at the end
+     * @param <T>        item type
+     * @return chunks
+     */
+    public <T> Multi<DataChunk> lines(Iterator<T> source, int flushEvery) {
+        return lines(Multi.create(() -> source), flushEvery);
+    }
+
+    /**
+     * Write the items as JSON lines, i.e. each item is a top-level document followed by {@code \n}.
+     *
+     * @param source     source of items
+     * @param flushEvery number of items after which the stream is flushed, {@code 0} to flush only at the end
+     * @param <T>        item type
+     * @return chunks
+     */
+    public <T> Multi<DataChunk> lines(Stream<T> source, int flushEvery) {
+        return lines(Multi.create(source), flushEvery);
+    }
+
+    private final class SourceSubscriber<T> implements Flow.Subscriber<T>, JsonGeneratorRx.Source {
+
+        private final Queue<T> items = new ConcurrentLinkedQueue<>();
+        private final AtomicLong outstanding = new AtomicLong();
+        private final JsonMultiOutputStream stream;
+        private final JsonGeneratorRx generator;
+        private final boolean wrapped;
+        private final boolean lines;
+        private final int flushEvery;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean done;
+        private volatile boolean canceled;
+        private boolean ended;
+        private long count;
+
+        SourceSubscriber(JsonMultiOutputStream stream,
+                         JsonGeneratorRx generator,
+                         boolean wrapped,
+                         boolean lines,
+                         int flushEvery) {
+            this.stream = stream;
+            this.generator = generator;
+            this.wrapped = wrapped;
+            this.lines = lines;
+            this.flushEvery = flushEvery;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (canceled) {
+                subscription.cancel();
+                return;
+            }
+            generator.drain();
+        }
+
+        @Override
+        public void onNext(T item) {
+            outstanding.decrementAndGet();
+            items.add(item);
+            generator.drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            stream.fail(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            generator.drain();
+        }
+
+        @Override
+        public boolean pull() {
+            T item = items.poll();
+            if (item != null) {
+                JsonTypeWriter writer = typeWriter(item);
+                if (writer != null) {
+                    writer.write(generator, item);
+                } else {
+                    jsonb.toJson(item, stream);
+                }
+                if (lines) {
+                    generator.endDocument(NEWLINE);
+                    if (flushEvery > 0 && ++count % flushEvery == 0) {
+                        generator.flushStream();
+                    }
+                }
+                return true;
+            }
+            if (done) {
+                if (ended) {
+                    return false;
+                }
+                ended = true;
+                if (!lines) {
+                    generator.writeEnd();
+                    if (wrapped) {
+                        generator.writeEnd();
+                    }
+                }
+                generator.end();
+                return true;
+            }
+            Flow.Subscription subscription = this.subscription;
+            if (subscription != null && outstanding.compareAndSet(0, prefetch)) {
+                subscription.request(prefetch);
+            }
+            return false;
+        }
+
+        void cancel() {
+            canceled = true;
+            Flow.Subscription subscription = this.subscription;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+        }
+    }
+
+    /**
+     * Bytes of a serialized segment.
+     */
+    private static final class Segment extends ByteArrayOutputStream {
+
+        Segment() {
+            super(SEGMENT_BUFFER_SIZE);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Serialize the segments of lists on the executor and emit them in order, between pieces of serialized bytes.
+     * The items of the list {@code i} are emitted after the piece {@code i}, the last piece ends the output.
+     */
+    private final class SegmentEmitter {
+
+        private final AtomicInteger wip = new AtomicInteger();
+        private final JsonMultiOutputStream stream;
+        private final List<byte[]> pieces;
+        private final List<List<?>> lists;
+        // list index and first item of each segment
+        private final int[] segmentLists;
+        private final int[] segmentStarts;
+        private final int segments;
+        private final AtomicReferenceArray<Segment> completed;
+        private volatile Throwable error;
+        private volatile boolean canceled;
+        private boolean ended;
+        private int launched;
+        private int next;
+
+        SegmentEmitter(JsonMultiOutputStream stream, List<byte[]> pieces, List<List<?>> lists) {
+            this.stream = stream;
+            this.pieces = pieces;
+            this.lists = lists;
+            int count = 0;
+            for (List<?> list : lists) {
+                count += (list.size() + segmentSize - 1) / segmentSize;
+            }
+            this.segments = count;
+            this.segmentLists = new int[count];
+            this.segmentStarts = new int[count];
+            int index = 0;
+            for (int i = 0; i < lists.size(); i++) {
+                for (int from = 0; from < lists.get(i).size(); from += segmentSize) {
+                    segmentLists[index] = i;
+                    segmentStarts[index++] = from;
+                }
+            }
+            this.completed = new AtomicReferenceArray<>(count);
+        }
+
+        /**
+         * Stop serializing and emitting the segments, invoked when the stream is canceled or failed.
+         * The segments being serialized stop at the next item, the completed segments and the chunk buffer of the
+         * stream are released by the draining thread.
+         */
+        void cancel() {
+            canceled = true;
+            drain();
+        }
+
+        /**
+         * Emit the completed segments in order while there is demand, one thread at a time.
+         */
+        void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                drainLoop();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drainLoop() {
+            if (canceled) {
+                release();
+                return;
+            }
+            if (ended) {
+                return;
+            }
+            try {
+                if (error != null) {
+                    throw error;
+                }
+                stream.drain();
+                while (stream.ready() && next < segments) {
+                    while (launched < segments && launched - next < parallelism) {
+                        launch(launched++);
+                    }
+                    Segment segment = completed.getAndSet(next, null);
+                    if (segment == null) {
+                        break;
+                    }
+                    if (segmentStarts[next] == 0) {
+                        stream.write(pieces.get(segmentLists[next]));
+                    } else {
+                        stream.write(',');
+                    }
+                    next++;
+                    // without the enclosing brackets
+                    stream.write(segment.buffer(), 1, segment.size() - 2);
+                }
+                if (next == segments && !stream.closed()) {
+                    stream.write(pieces.get(pieces.size() - 1));
+                    stream.close();
+                }
+                if (stream.closed()) {
+                    stream.drain();
+                    if (stream.drained()) {
+                        ended = true;
+                        stream.complete();
+                    }
+                }
+            } catch (Throwable ex) {
+                ended = true;
+                stream.fail(ex);
+            }
+        }
+
+        /**
+         * Release the completed segments, and the chunk buffer of the stream since nothing is written anymore.
+         * The segments completed after the cancellation are released by the next iteration of the loop.
+         */
+        private void release() {
+            for (int i = next; i < segments; i++) {
+                completed.set(i, null);
+            }
+            if (!ended) {
+                ended = true;
+                stream.releaseBuffer();
+            }
+        }
+
+        private void launch(int index) {
+            List<?> list = lists.get(segmentLists[index]);
+            int from = segmentStarts[index];
+            List<?> segment = list.subList(from, Math.min(list.size(), from + segmentSize));
+            executor.execute(() -> {
+                try {
+                    Segment serialized = serialize(segment);
+                    if (serialized != null) {
+                        completed.set(index, serialized);
+                    }
+                } catch (Throwable ex) {
+                    error = ex;
+                }
+                drain();
+            });
+        }
+
+        /**
+         * Serialize the items of a segment.
+         *
+         * @param items items
+         * @return serialized segment, {@code null} if canceled
+         */
+        private Segment serialize(List<?> items) {
+            Segment segment = new Segment();
+            JsonGenerator generator = provider.delegate.createGenerator(segment);
+            generator.writeStartArray();
+            for (Object item : items) {
+                if (canceled) {
+                    return null;
+                }
+                JsonTypeWriter writer = typeWriter(item);
+                if (item == null) {
+                    generator.writeNull();
+                } else if (writer != null) {
+                    writer.write(generator, item);
+                } else {
+                    ((YassonJsonb) jsonb).toJson(item, generator);
+                }
+            }
+            generator.writeEnd();
+            generator.close();
+            return segment;
+        }
+    }
+
+    /**
+     * Builder of {@link JsonMultiWriter}.
+     */
+    public static final class Builder {
+
+        private JsonProviderRx provider;
+        private Jsonb jsonb;
+        private int prefetch = DEFAULT_PREFETCH;
+        private boolean compiled;
+        private int parallelThreshold = Integer.MAX_VALUE;
+        private int segmentSize = DEFAULT_SEGMENT_SIZE;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        private Executor executor = ForkJoinPool.commonPool();
+        private Supplier<JsonMultiOutputStream> streams = JsonMultiOutputStream::create;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the provider used to generate the array.
+         *
+         * @param provider provider
+         * @return this builder
+         */
+        public Builder provider(JsonProviderRx provider) {
+            this.provider = provider;
+            return this;
+        }
+
+        /**
+         * Set the jsonb used to serialize the items, it must use the same provider.
+         *
+         * @param jsonb jsonb
+         * @return this builder
+         */
+        public Builder jsonb(Jsonb jsonb) {
+            this.jsonb = jsonb;
+            return this;
+        }
+
+        /**
+         * Set the number of items requested at once, the default is {@code 16}.
+         *
+         * @param prefetch prefetch
+         * @return this builder
+         */
+        public Builder prefetch(int prefetch) {
+            if (prefetch <= 0) {
+                throw new IllegalArgumentException("Invalid prefetch: " + prefetch);
+            }
+            this.prefetch = prefetch;
+            return this;
+        }
+
+        /**
+         * Use compiled writers for the supported types, the default is {@code false}.
+         * The compiled writers ignore the {@code JsonbConfig}, they must only be enabled if the Jsonb uses the default
+         * configuration.
+         *
+         * @param compiled {@code true} to use compiled writers, {@code false} to always use jsonb
+         * @return this builder
+         */
+        public Builder compiled(boolean compiled) {
+            this.compiled = compiled;
+            return this;
+        }
+
+        /**
+         * Serialize the lists of at least the given number of items in parallel, disabled by default.
+         * Parallel serialization requires Yasson.
+         *
+         * @param threshold minimum number of items
+         * @return this builder
+         */
+        public Builder parallel(int threshold) {
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("Invalid threshold: " + threshold);
+            }
+            this.parallelThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Set the number of items of a segment serialized in parallel, the default is {@code 1024}.
+         *
+         * @param segmentSize number of items
+         * @return this builder
+         */
+        public Builder segmentSize(int segmentSize) {
+            if (segmentSize <= 0) {
+                throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+            }
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of segments serialized or waiting to be emitted, the default is the number of
+         * available processors.
+         *
+         * @param parallelism parallelism
+         * @return this builder
+         */
+        public Builder parallelism(int parallelism) {
+            if (parallelism <= 0) {
+                throw new IllegalArgumentException("Invalid parallelism: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Set the executor used to serialize the segments, the default is the common {@link ForkJoinPool}.
+         *
+         * @param executor executor
+         * @return this builder
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set the factory of the streams written by the writer, the default is {@link JsonMultiOutputStream#create()}.
+         * The streams must be in event queue mode, parallel serialization requires the {@link JsonFormat#JSON} format.
+         *
+         * @param streams factory of streams
+         * @return this builder
+         */
+        public Builder streams(Supplier<JsonMultiOutputStream> streams) {
+            this.streams = Objects.requireNonNull(streams, "streams is required");
+            return this;
+        }
+
+        /**
+         * Build the writer.
+         *
+         * @return JsonMultiWriter
+         */
+        public JsonMultiWriter build() {
+            Objects.requireNonNull(provider, "provider is required");
+            Objects.requireNonNull(jsonb, "jsonb is required");
+            return new JsonMultiWriter(this);
+        }
+    }
+}
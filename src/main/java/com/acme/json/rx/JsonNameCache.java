@@ -0,0 +1,131 @@
+package com.acme.json.rx;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of property names encoded as quoted, escaped UTF-8 bytes followed by a colon, e.g. {@code "name":}.
+ * <p>
+ * When the cache is full an arbitrary entry is evicted. Names longer than {@link #MAX_NAME_LENGTH} are not cached.
+ */
+public final class JsonNameCache {
+
+    /**
+     * Maximum length of a cached name.
+     */
+    public static final int MAX_NAME_LENGTH = 128;
+
+    private static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final Map<String, byte[]> names = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final int maxSize;
+
+    private JsonNameCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid max size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Create a new cache of {@code 1024} names.
+     *
+     * @return cache
+     */
+    public static JsonNameCache create() {
+        return new JsonNameCache(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize maximum number of cached names
+     * @return cache
+     */
+    public static JsonNameCache create(int maxSize) {
+        return new JsonNameCache(maxSize);
+    }
+
+    /**
+     * Get the number of lookups that found a cached name.
+     *
+     * @return hit count
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that encoded a name.
+     *
+     * @return miss count
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of cached names.
+     *
+     * @return size
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Get the encoded bytes of a name.
+     *
+     * @param name name
+     * @return encoded bytes, or {@code null} if the name is too long to be cached
+     */
+    byte[] get(String name) {
+        byte[] bytes = names.get(name);
+        if (bytes != null) {
+            hits.increment();
+            return bytes;
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            return null;
+        }
+        misses.increment();
+        bytes = encode(name);
+        if (names.size() >= maxSize) {
+            Iterator<String> it = names.keySet().iterator();
+            if (it.hasNext()) {
+                names.remove(it.next());
+            }
+        }
+        names.put(name, bytes);
+        return bytes;
+    }
+
+    /**
+     * Encode a name, e.g. {@code "name":}.
+     *
+     * @param name name
+     * @return encoded bytes
+     */
+    static byte[] encode(String name) {
+        StringBuilder sb = new StringBuilder(name.length() + 3);
+        sb.append('"');
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            byte escape = JsonGeneratorUtf8.escape(c);
+            if (escape == 0) {
+                sb.append(c);
+            } else if (escape == 'u') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append('\\').append((char) escape);
+            }
+        }
+        sb.append("\":");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,700 @@
+package com.acme.json.rx;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonValue;
+import jakarta.json.spi.JsonProvider;
+import jakarta.json.stream.JsonLocation;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParsingException;
+
+/**
+ * Non-blocking {@link JsonParser} fed with chunks of bytes.
+ * <p>
+ * Events are parsed as soon as their bytes are available, {@link #poll()} returns {@code null} when more input is
+ * needed. {@link #next()} fails instead, it must only be used once the value being read is known to be buffered, see
+ * {@link #valueBuffered()}; e.g. to deserialize the elements of an array with Jsonb one at a time.
+ * <p>
+ * The unread bytes are buffered, the memory used is bounded by the largest value read at once plus one chunk.
+ */
+final class JsonParserRx implements JsonParser {
+
+    private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_LONG_DIGITS = 18;
+
+    // expected tokens
+    private static final int VALUE = 0;
+    private static final int VALUE_OR_END = 1;
+    private static final int KEY_OR_END = 2;
+    private static final int KEY = 3;
+    private static final int COLON = 4;
+    private static final int COMMA_OR_END = 5;
+    private static final int ROOT_END = 6;
+
+    /**
+     * Location of the parser, only the stream offset is known.
+     *
+     * @param getStreamOffset stream offset
+     */
+    private record Location(long getStreamOffset) implements JsonLocation {
+
+        @Override
+        public long getLineNumber() {
+            return -1;
+        }
+
+        @Override
+        public long getColumnNumber() {
+            return -1;
+        }
+    }
+
+    private final JsonProvider provider;
+    private final boolean documents;
+    private byte[] buf = new byte[INITIAL_BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long offset;
+    private boolean ended;
+    // true for objects
+    private boolean[] stack = new boolean[16];
+    private int depth;
+    private int state = VALUE;
+    private Event current;
+    private String string;
+    private int numberStart;
+    private int numberEnd;
+    private boolean integral;
+    // resumable scan of the next value, see valueBuffered()
+    private int scanPos = -1;
+    private int scanDepth;
+    private boolean scanString;
+    private boolean scanEscape;
+    private boolean scanned;
+
+    /**
+     * Create a new parser.
+     *
+     * @param provider  provider used to create the values, see {@link #getValue()}
+     * @param documents {@code true} to parse a sequence of top-level values, e.g. JSON lines
+     */
+    JsonParserRx(JsonProvider provider, boolean documents) {
+        this.provider = provider;
+        this.documents = documents;
+    }
+
+    /**
+     * Append input.
+     *
+     * @param data bytes, not consumed
+     */
+    void feed(ByteBuffer data) {
+        int n = data.remaining();
+        if (buf.length - limit < n) {
+            compact();
+            if (buf.length - limit < n) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, limit + n));
+            }
+        }
+        data.duplicate().get(buf, limit, n);
+        limit += n;
+    }
+
+    /**
+     * Signal the end of the input.
+     */
+    void endOfInput() {
+        ended = true;
+    }
+
+    /**
+     * Test if the end of the input was signaled.
+     *
+     * @return {@code true} if ended
+     */
+    boolean ended() {
+        return ended;
+    }
+
+    /**
+     * Skip the whitespace and separators before the next token.
+     *
+     * @return the first byte of the next token, or {@code -1} if more input is needed
+     * @throws JsonParsingException if an unexpected token is found
+     */
+    int peek() {
+        while (true) {
+            while (pos < limit && whitespace(buf[pos])) {
+                pos++;
+            }
+            if (pos == limit) {
+                return -1;
+            }
+            byte b = buf[pos];
+            switch (state) {
+                case COLON -> {
+                    if (b != ':') {
+                        throw unexpected(b);
+                    }
+                    pos++;
+                    state = VALUE;
+                }
+                case COMMA_OR_END -> {
+                    if (b == ',') {
+                        pos++;
+                        state = stack[depth - 1] ? KEY : VALUE;
+                    } else if (b == ']' || b == '}') {
+                        return b;
+                    } else {
+                        throw unexpected(b);
+                    }
+                }
+                case ROOT_END -> {
+                    if (!documents) {
+                        throw unexpected(b);
+                    }
+                    state = VALUE;
+                    return b;
+                }
+                default -> {
+                    return b;
+                }
+            }
+        }
+    }
+
+    /**
+     * Parse the next event.
+     *
+     * @return event, or {@code null} if more input is needed or if the input is ended after a top-level value
+     * @throws JsonParsingException if the input is invalid or ended before the end of the value
+     */
+    Event poll() {
+        int b = peek();
+        if (b < 0) {
+            if (ended && !(depth == 0 && (state == ROOT_END || documents && state == VALUE))) {
+                throw new JsonParsingException("Unexpected end of input", getLocation());
+            }
+            return null;
+        }
+        Event event = switch (state) {
+            case KEY_OR_END, KEY -> {
+                if (b == '}' && state == KEY_OR_END) {
+                    yield end(false);
+                }
+                if (b != '"') {
+                    throw unexpected(b);
+                }
+                if (!readString()) {
+                    yield null;
+                }
+                state = COLON;
+                yield Event.KEY_NAME;
+            }
+            case VALUE_OR_END -> b == ']' ? end(true) : value(b);
+            case COMMA_OR_END -> end(b == ']');
+            default -> value(b);
+        };
+        if (event != null) {
+            current = event;
+            scanPos = -1;
+            scanned = false;
+        }
+        return event;
+    }
+
+    /**
+     * Test if the next value is entirely buffered, in which case its events can be read with {@link #next()}.
+     * Must be invoked after {@link #peek()} returned the first byte of the value. The scan is resumed when more input
+     * is available, every byte is scanned once.
+     *
+     * @return {@code true} if the value is buffered or the input is ended
+     */
+    boolean valueBuffered() {
+        if (scanned || ended) {
+            return true;
+        }
+        byte first = buf[pos];
+        if (scanPos < 0) {
+            scanPos = pos;
+            scanDepth = 0;
+            scanString = false;
+            scanEscape = false;
+        }
+        if (first != '{' && first != '[' && first != '"') {
+            // literal or number, buffered if followed by a delimiter
+            for (; scanPos < limit; scanPos++) {
+                byte b = buf[scanPos];
+                if (whitespace(b) || b == ',' || b == ']' || b == '}') {
+                    scanned = true;
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (; scanPos < limit; scanPos++) {
+            byte b = buf[scanPos];
+            if (scanString) {
+                if (scanEscape) {
+                    scanEscape = false;
+                } else if (b == '\\') {
+                    scanEscape = true;
+                } else if (b == '"') {
+                    scanString = false;
+                    if (scanDepth == 0) {
+                        scanPos++;
+                        scanned = true;
+                        return true;
+                    }
+                }
+            } else if (b == '"') {
+                scanString = true;
+            } else if (b == '{' || b == '[') {
+                scanDepth++;
+            } else if ((b == '}' || b == ']') && --scanDepth == 0) {
+                scanPos++;
+                scanned = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Read the bytes of the next value, the parser is advanced past the value.
+     * Must be invoked after {@link #valueBuffered()} returned {@code true}.
+     *
+     * @return input stream, only valid until more input is appended
+     */
+    InputStream readValue() {
+        int end = scanned ? scanPos : limit;
+        InputStream value = new ByteArrayInputStream(buf, pos, end - pos);
+        pos = end;
+        afterValue();
+        current = null;
+        scanPos = -1;
+        scanned = false;
+        return value;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (depth > 0) {
+            return true;
+        }
+        if (state == ROOT_END && !documents) {
+            return false;
+        }
+        return peek() >= 0 || !ended;
+    }
+
+    @Override
+    public Event next() {
+        Event event = poll();
+        if (event == null) {
+            if (ended) {
+                throw new NoSuchElementException();
+            }
+            throw new IllegalStateException("More input is needed");
+        }
+        return event;
+    }
+
+    @Override
+    public Event currentEvent() {
+        return current;
+    }
+
+    @Override
+    public String getString() {
+        if (current == Event.KEY_NAME || current == Event.VALUE_STRING) {
+            return string;
+        }
+        if (current == Event.VALUE_NUMBER) {
+            return new String(buf, numberStart, numberEnd - numberStart, StandardCharsets.ISO_8859_1);
+        }
+        throw new IllegalStateException("Unexpected event: " + current);
+    }
+
+    @Override
+    public boolean isIntegralNumber() {
+        checkNumber();
+        return integral;
+    }
+
+    @Override
+    public int getInt() {
+        checkNumber();
+        if (integral && numberEnd - numberStart <= MAX_LONG_DIGITS) {
+            return (int) parseLong();
+        }
+        return getBigDecimal().intValue();
+    }
+
+    @Override
+    public long getLong() {
+        checkNumber();
+        if (integral && numberEnd - numberStart <= MAX_LONG_DIGITS) {
+            return parseLong();
+        }
+        return getBigDecimal().longValue();
+    }
+
+    @Override
+    public BigDecimal getBigDecimal() {
+        checkNumber();
+        return new BigDecimal(getString());
+    }
+
+    @Override
+    public JsonLocation getLocation() {
+        return new Location(offset + pos);
+    }
+
+    @Override
+    public JsonValue getValue() {
+        if (current == null) {
+            throw new IllegalStateException("No current event");
+        }
+        return switch (current) {
+            case START_OBJECT -> getObject();
+            case START_ARRAY -> getArray();
+            case KEY_NAME, VALUE_STRING -> provider.createValue(string);
+            case VALUE_NUMBER -> integral && numberEnd - numberStart <= MAX_LONG_DIGITS
+                    ? provider.createValue(parseLong())
+                    : provider.createValue(getBigDecimal());
+            case VALUE_TRUE -> JsonValue.TRUE;
+            case VALUE_FALSE -> JsonValue.FALSE;
+            case VALUE_NULL -> JsonValue.NULL;
+            default -> throw new IllegalStateException("Unexpected event: " + current);
+        };
+    }
+
+    @Override
+    public JsonObject getObject() {
+        if (current != Event.START_OBJECT) {
+            throw new IllegalStateException("Unexpected event: " + current);
+        }
+        JsonObjectBuilder builder = provider.createObjectBuilder();
+        while (next() != Event.END_OBJECT) {
+            String name = string;
+            next();
+            builder.add(name, getValue());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public JsonArray getArray() {
+        if (current != Event.START_ARRAY) {
+            throw new IllegalStateException("Unexpected event: " + current);
+        }
+        JsonArrayBuilder builder = provider.createArrayBuilder();
+        while (next() != Event.END_ARRAY) {
+            builder.add(getValue());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public void skipObject() {
+        skip(true);
+    }
+
+    @Override
+    public void skipArray() {
+        skip(false);
+    }
+
+    @Override
+    public void close() {
+        ended = true;
+        pos = limit;
+    }
+
+    private void skip(boolean object) {
+        if (depth == 0 || stack[depth - 1] != object) {
+            return;
+        }
+        int target = depth - 1;
+        while (depth > target) {
+            next();
+        }
+    }
+
+    private void compact() {
+        if (pos == 0) {
+            return;
+        }
+        System.arraycopy(buf, pos, buf, 0, limit - pos);
+        limit -= pos;
+        offset += pos;
+        numberStart -= pos;
+        numberEnd -= pos;
+        if (scanPos >= 0) {
+            scanPos -= pos;
+        }
+        pos = 0;
+    }
+
+    private Event value(int b) {
+        switch (b) {
+            case '{' -> {
+                push(true);
+                state = KEY_OR_END;
+                return Event.START_OBJECT;
+            }
+            case '[' -> {
+                push(false);
+                state = VALUE_OR_END;
+                return Event.START_ARRAY;
+            }
+            case '"' -> {
+                if (!readString()) {
+                    return null;
+                }
+                afterValue();
+                return Event.VALUE_STRING;
+            }
+            case 't' -> {
+                return literal("true", Event.VALUE_TRUE);
+            }
+            case 'f' -> {
+                return literal("false", Event.VALUE_FALSE);
+            }
+            case 'n' -> {
+                return literal("null", Event.VALUE_NULL);
+            }
+            default -> {
+                if (b == '-' || b >= '0' && b <= '9') {
+                    return number();
+                }
+                throw unexpected(b);
+            }
+        }
+    }
+
+    private Event end(boolean array) {
+        if (stack[depth - 1] == array) {
+            throw unexpected(buf[pos]);
+        }
+        depth--;
+        pos++;
+        afterValue();
+        return array ? Event.END_ARRAY : Event.END_OBJECT;
+    }
+
+    private void push(boolean object) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = object;
+        pos++;
+    }
+
+    private void afterValue() {
+        state = depth == 0 ? ROOT_END : COMMA_OR_END;
+    }
+
+    private Event literal(String literal, Event event) {
+        int length = literal.length();
+        if (limit - pos < length) {
+            if (ended) {
+                throw new JsonParsingException("Unexpected end of input", getLocation());
+            }
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[pos + i] != literal.charAt(i)) {
+                throw unexpected(buf[pos + i]);
+            }
+        }
+        pos += length;
+        afterValue();
+        return event;
+    }
+
+    private Event number() {
+        int end = pos;
+        while (end < limit && numberChar(buf[end])) {
+            end++;
+        }
+        if (end == limit && !ended) {
+            return null;
+        }
+        // -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+        int i = pos;
+        if (buf[i] == '-') {
+            i++;
+        }
+        int digits = digits(i, end);
+        if (digits == 0 || digits > 1 && buf[i] == '0') {
+            throw new JsonParsingException("Invalid number", getLocation());
+        }
+        i += digits;
+        boolean fraction = i < end && buf[i] == '.';
+        if (fraction) {
+            i++;
+            digits = digits(i, end);
+            if (digits == 0) {
+                throw new JsonParsingException("Invalid number", getLocation());
+            }
+            i += digits;
+        }
+        boolean exponent = i < end && (buf[i] == 'e' || buf[i] == 'E');
+        if (exponent) {
+            i++;
+            if (i < end && (buf[i] == '+' || buf[i] == '-')) {
+                i++;
+            }
+            digits = digits(i, end);
+            if (digits == 0) {
+                throw new JsonParsingException("Invalid number", getLocation());
+            }
+            i += digits;
+        }
+        if (i != end) {
+            throw unexpected(buf[i]);
+        }
+        numberStart = pos;
+        numberEnd = end;
+        integral = !fraction && !exponent;
+        pos = end;
+        afterValue();
+        return Event.VALUE_NUMBER;
+    }
+
+    private int digits(int from, int to) {
+        int i = from;
+        while (i < to && buf[i] >= '0' && buf[i] <= '9') {
+            i++;
+        }
+        return i - from;
+    }
+
+    private long parseLong() {
+        int i = numberStart;
+        boolean negative = buf[i] == '-';
+        if (negative) {
+            i++;
+        }
+        long value = 0;
+        for (; i < numberEnd; i++) {
+            value = value * 10 + (buf[i] - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private void checkNumber() {
+        if (current != Event.VALUE_NUMBER) {
+            throw new IllegalStateException("Unexpected event: " + current);
+        }
+    }
+
+    /**
+     * Read the string that starts at the current position.
+     *
+     * @return {@code true} if the string was read, {@code false} if more input is needed
+     */
+    private boolean readString() {
+        int start = pos + 1;
+        int i = start;
+        while (i < limit && buf[i] != '"' && buf[i] != '\\') {
+            if ((buf[i] & 0xff) < 0x20) {
+                throw unexpected(buf[i]);
+            }
+            i++;
+        }
+        if (i < limit && buf[i] == '"') {
+            string = new String(buf, start, i - start, StandardCharsets.UTF_8);
+            pos = i + 1;
+            return true;
+        }
+        // find the end of the string before decoding the escape sequences
+        boolean escape = false;
+        int end = i;
+        for (; end < limit; end++) {
+            if (escape) {
+                escape = false;
+            } else if (buf[end] == '\\') {
+                escape = true;
+            } else if (buf[end] == '"') {
+                break;
+            }
+        }
+        if (end == limit) {
+            if (ended) {
+                throw new JsonParsingException("Unexpected end of input", getLocation());
+            }
+            return false;
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        int segment = start;
+        i = start;
+        while (i < end) {
+            if (buf[i] != '\\') {
+                if ((buf[i] & 0xff) < 0x20) {
+                    throw unexpected(buf[i]);
+                }
+                i++;
+                continue;
+            }
+            sb.append(new String(buf, segment, i - segment, StandardCharsets.UTF_8));
+            byte c = buf[i + 1];
+            i += 2;
+            switch (c) {
+                case '"' -> sb.append('"');
+                case '\\' -> sb.append('\\');
+                case '/' -> sb.append('/');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (end - i < 4) {
+                        throw new JsonParsingException("Invalid escape sequence", getLocation());
+                    }
+                    int code = 0;
+                    for (int k = 0; k < 4; k++) {
+                        int digit = Character.digit(buf[i + k], 16);
+                        if (digit < 0) {
+                            throw new JsonParsingException("Invalid escape sequence", getLocation());
+                        }
+                        code = code << 4 | digit;
+                    }
+                    sb.append((char) code);
+                    i += 4;
+                }
+                default -> throw new JsonParsingException("Invalid escape sequence", getLocation());
+            }
+            segment = i;
+        }
+        sb.append(new String(buf, segment, end - segment, StandardCharsets.UTF_8));
+        string = sb.toString();
+        pos = end + 1;
+        return true;
+    }
+
+    private JsonParsingException unexpected(int b) {
+        return new JsonParsingException("Unexpected char: '" + (char) (b & 0xff) + "'", getLocation());
+    }
+
+    private static boolean whitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean numberChar(byte b) {
+        return b >= '0' && b <= '9' || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+}
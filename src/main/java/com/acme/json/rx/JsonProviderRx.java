@@ -2,7 +2,10 @@ package com.acme.json.rx;
 
 import java.io.OutputStream;
 import java.nio.charset.Charset;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import jakarta.json.spi.JsonProvider;
 import jakarta.json.stream.JsonGenerator;
@@ -10,40 +13,132 @@ import jakarta.json.stream.JsonGeneratorFactory;
 
 public final class JsonProviderRx extends JsonProviderDelegate {
 
-    private JsonProviderRx(JsonProvider delegate) {
+    /**
+     * Generator used to write the serialized bytes.
+     */
+    public enum Backend {
+
+        /**
+         * Use the generator of the delegate provider, e.g. Parsson.
+         */
+        DELEGATE,
+
+        /**
+         * Use a built-in generator that encodes directly into the stream chunks, bypassing the delegate provider.
+         * The generator configuration (e.g. pretty printing) is not supported.
+         */
+        UTF8
+    }
+
+    private final Backend backend;
+    private final JsonNameCache names = JsonNameCache.create();
+    private final Map<Class<?>, JsonTypeWriter> writers = new ConcurrentHashMap<>();
+
+    private JsonProviderRx(JsonProvider delegate, Backend backend) {
         super(delegate);
+        this.backend = backend;
     }
 
     public static JsonProviderRx create(JsonProvider delegate) {
-        return new JsonProviderRx(delegate);
+        return new JsonProviderRx(delegate, Backend.DELEGATE);
+    }
+
+    public static JsonProviderRx create(JsonProvider delegate, Backend backend) {
+        return new JsonProviderRx(delegate, backend);
+    }
+
+    /**
+     * Get the cache of encoded property names used by the {@link Backend#UTF8} backend.
+     *
+     * @return cache
+     */
+    public JsonNameCache nameCache() {
+        return names;
+    }
+
+    /**
+     * Get the compiled writer of the given type, the writer is compiled on first use.
+     *
+     * @param type type
+     * @return writer, or {@code null} if the type is not supported
+     */
+    JsonTypeWriter typeWriter(Class<?> type) {
+        JsonTypeWriter writer = writers.get(type);
+        if (writer == null) {
+            Map<Class<?>, JsonTypeWriter> compiled = new HashMap<>();
+            writer = JsonTypeWriter.compile(type, compiled);
+            if (writer != JsonTypeWriter.UNSUPPORTED) {
+                compiled.forEach(writers::putIfAbsent);
+            }
+            writers.putIfAbsent(type, writer);
+        }
+        return writer != JsonTypeWriter.UNSUPPORTED ? writer : null;
     }
 
     @Override
     public JsonGenerator createGenerator(OutputStream os) {
-        if (os instanceof JsonMultiOutputStream stream) {
-            return new JsonGeneratorRx(stream, delegate::createGenerator);
-        }
-        throw new IllegalArgumentException("Not an instance of " + JsonMultiOutputStream.class);
+        return backend == Backend.UTF8
+                ? createGenerator(os, this::createUtf8Generator, true)
+                : createGenerator(os, delegate::createGenerator, false);
     }
 
     @Override
     public JsonGeneratorFactory createGeneratorFactory(Map<String, ?> config) {
         JsonGeneratorFactory delegate = super.createGeneratorFactory(config);
-        return new JsonGeneratorFactoryRx(delegate);
+        return new JsonGeneratorFactoryRx(delegate, backend == Backend.UTF8 ? this::createUtf8Generator : null);
+    }
+
+    private JsonGenerator createUtf8Generator(OutputStream os) {
+        return JsonGeneratorUtf8.acquire(os, names);
+    }
+
+    /**
+     * Create a generator for a {@link JsonMultiOutputStream}.
+     *
+     * @param os      stream
+     * @param factory factory of the generators that encode the events
+     * @param utf8    {@code true} if the factory creates {@link JsonGeneratorUtf8}, compiled types are then replayed
+     *                from their {@link JsonTape}
+     * @return generator
+     */
+    private static JsonGenerator createGenerator(OutputStream os,
+                                                 Function<OutputStream, JsonGenerator> factory,
+                                                 boolean utf8) {
+        if (os instanceof JsonMultiOutputStream stream) {
+            Function<OutputStream, JsonGenerator> generators = stream.format() == JsonFormat.CBOR
+                    ? JsonGeneratorCbor::new
+                    : factory;
+            if (stream.blocking()) {
+                return generators.apply(stream);
+            }
+            if (stream.generator() != null) {
+                return stream.generator();
+            }
+            return new JsonGeneratorRx(stream, generators, utf8 && stream.format() == JsonFormat.JSON);
+        }
+        throw new IllegalArgumentException("Not an instance of " + JsonMultiOutputStream.class);
     }
 
     private static final class JsonGeneratorFactoryRx extends JsonGeneratorFactoryDelegate {
 
-        JsonGeneratorFactoryRx(JsonGeneratorFactory delegate) {
+        private final Function<OutputStream, JsonGenerator> factory;
+
+        /**
+         * Create a new factory.
+         *
+         * @param delegate delegate factory
+         * @param factory  generator factory, {@code null} to use the delegate factory
+         */
+        JsonGeneratorFactoryRx(JsonGeneratorFactory delegate, Function<OutputStream, JsonGenerator> factory) {
             super(delegate);
+            this.factory = factory;
         }
 
         @Override
         public JsonGenerator createGenerator(OutputStream os) {
-            if (os instanceof JsonMultiOutputStream stream) {
-                return new JsonGeneratorRx(stream, super::createGenerator);
-            }
-            throw new IllegalArgumentException("Not an instance of " + JsonMultiOutputStream.class);
+            return factory != null
+                    ? JsonProviderRx.createGenerator(os, factory, true)
+                    : JsonProviderRx.createGenerator(os, super::createGenerator, false);
         }
 
         @Override
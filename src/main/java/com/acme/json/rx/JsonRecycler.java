@@ -0,0 +1,122 @@
+package com.acme.json.rx;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Bounded per-thread pool of recycled objects.
+ * <p>
+ * An object is reused by the thread that released it, without synchronization. Each thread keeps at most
+ * {@code maxPooled} objects, extra objects are left to the garbage collector. Virtual threads do not pool since their
+ * thread locals do not outlive the task, objects acquired and released on a virtual thread are always new.
+ * <p>
+ * Releasing an object that is already pooled by the current thread fails. The owner of an object must not use it after
+ * releasing it, the recycled objects check that they are not used after being released.
+ *
+ * @param <T> object type
+ */
+final class JsonRecycler<T> {
+
+    private static final MethodHandle IS_VIRTUAL = isVirtualHandle();
+
+    private final ThreadLocal<Pool> pools;
+    private final int maxPooled;
+
+    private JsonRecycler(int maxPooled) {
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("Invalid max pooled: " + maxPooled);
+        }
+        this.maxPooled = maxPooled;
+        this.pools = ThreadLocal.withInitial(() -> new Pool(maxPooled));
+    }
+
+    /**
+     * Create a new recycler.
+     *
+     * @param maxPooled maximum number of objects pooled per thread
+     * @param <T>       object type
+     * @return recycler
+     */
+    static <T> JsonRecycler<T> create(int maxPooled) {
+        return new JsonRecycler<>(maxPooled);
+    }
+
+    /**
+     * Get an object released by the current thread.
+     *
+     * @return object, or {@code null} if the pool of the current thread is empty
+     */
+    @SuppressWarnings("unchecked")
+    T acquire() {
+        if (maxPooled == 0 || isVirtual()) {
+            return null;
+        }
+        Pool pool = pools.get();
+        if (pool.size == 0) {
+            return null;
+        }
+        int index = --pool.size;
+        T object = (T) pool.objects[index];
+        pool.objects[index] = null;
+        return object;
+    }
+
+    /**
+     * Return an object to the pool of the current thread.
+     *
+     * @param object object, must be reset
+     * @return {@code true} if pooled, {@code false} if the pool is full and the object should be discarded
+     * @throws IllegalStateException if the object is already pooled
+     */
+    boolean release(T object) {
+        if (maxPooled == 0 || isVirtual()) {
+            return false;
+        }
+        Pool pool = pools.get();
+        for (int i = 0; i < pool.size; i++) {
+            if (pool.objects[i] == object) {
+                throw new IllegalStateException("Already released: " + object);
+            }
+        }
+        if (pool.size == maxPooled) {
+            return false;
+        }
+        pool.objects[pool.size++] = object;
+        return true;
+    }
+
+    private static boolean isVirtual() {
+        if (IS_VIRTUAL == null) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+        } catch (Throwable ignored) {
+            return false;
+        }
+    }
+
+    private static MethodHandle isVirtualHandle() {
+        try {
+            return MethodHandles.publicLookup()
+                    .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+        } catch (ReflectiveOperationException ignored) {
+            // virtual threads are not available
+            return null;
+        }
+    }
+
+    /**
+     * Objects pooled by a thread.
+     */
+    private static final class Pool {
+
+        final Object[] objects;
+        int size;
+
+        Pool(int maxPooled) {
+            objects = new Object[maxPooled];
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.acme.json.rx;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+import io.helidon.common.http.DataChunk;
+import io.helidon.common.http.Http;
+import io.helidon.common.reactive.Multi;
+import io.helidon.common.reactive.Single;
+import io.helidon.webserver.ServerRequest;
+import io.helidon.webserver.ServerResponse;
+
+/**
+ * Cache of serialized responses, bounded by a total number of bytes.
+ * <p>
+ * On a miss the chunks emitted by the producer are copied as they are written to the response, the copy is cached
+ * when the response completes. On a hit the cached bytes are replayed as read-only views, without serializing or
+ * copying. Concurrent misses for the same key are coalesced: only the first one serializes the response, the others
+ * wait for it and replay the cached bytes.
+ * <p>
+ * The recording completes with the first response, i.e. at the pace of the first client. A slow first client would
+ * stall the coalesced requests, they wait at most {@code maxWait} and serialize their own response after that. A
+ * shorter wait bounds the latency of the coalesced requests at the cost of serializing the same response several
+ * times, a longer wait saves the serialization when the first client is slow.
+ * <p>
+ * When the cache is full the least recently used entries are evicted, responses larger than the cache are not
+ * cached. The key must identify the entity version and all the variants of the response, e.g. the content coding.
+ * <pre>{@code
+ * cache.send(req, res, "company:" + version, () -> JsonMultiOutputStream.create()
+ *         .produce(out -> jsonb.toJson(company, out)));
+ * }</pre>
+ */
+public final class JsonResponseCache {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+    private static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(1);
+
+    private final Map<String, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final long maxBytes;
+    private final long maxWaitNanos;
+
+    private JsonResponseCache(long maxBytes, Duration maxWait) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid max bytes: " + maxBytes);
+        }
+        if (maxWait.isNegative()) {
+            throw new IllegalArgumentException("Invalid max wait: " + maxWait);
+        }
+        this.maxBytes = maxBytes;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * Create a new cache, coalesced requests wait at most one second for the first response.
+     *
+     * @param maxBytes maximum number of cached bytes
+     * @return cache
+     */
+    public static JsonResponseCache create(long maxBytes) {
+        return new JsonResponseCache(maxBytes, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxBytes maximum number of cached bytes
+     * @param maxWait  maximum time a coalesced request waits for the first response before serializing its own
+     * @return cache
+     */
+    public static JsonResponseCache create(long maxBytes, Duration maxWait) {
+        return new JsonResponseCache(maxBytes, Objects.requireNonNull(maxWait, "maxWait is required"));
+    }
+
+    /**
+     * Get the number of requests served from the cache, including the coalesced misses.
+     *
+     * @return hit count
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of requests that serialized a response.
+     *
+     * @return miss count
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of evicted entries.
+     *
+     * @return eviction count
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of cached bytes.
+     *
+     * @return size
+     */
+    public long size() {
+        return size.get();
+    }
+
+    /**
+     * Remove an entry, e.g. when the entity is updated.
+     *
+     * @param key key
+     */
+    public void invalidate(String key) {
+        CompletableFuture<Entry> future = entries.remove(key);
+        if (future != null) {
+            discard(future.getNow(null));
+        }
+    }
+
+    /**
+     * Get the chunks of a response, the producer is invoked only if the response is not cached.
+     *
+     * @param key      key
+     * @param producer producer of the response chunks
+     * @return chunks
+     */
+    public Multi<DataChunk> get(String key, Supplier<? extends Flow.Publisher<DataChunk>> producer) {
+        CompletableFuture<Entry> future = entries.get(key);
+        if (future == null) {
+            CompletableFuture<Entry> created = new CompletableFuture<>();
+            future = entries.putIfAbsent(key, created);
+            if (future == null) {
+                misses.increment();
+                return record(key, created, producer.get());
+            }
+        }
+        Entry entry = future.getNow(null);
+        if (entry != null) {
+            hits.increment();
+            return entry.replay();
+        }
+        // serialization in progress, serialize again if it is not cached in time
+        // the timeout completes a copy, the recording still completes the shared future
+        CompletableFuture<Entry> waiter = future.copy().completeOnTimeout(null, maxWaitNanos, TimeUnit.NANOSECONDS);
+        return Single.create(waiter.handle((e, ex) -> {
+            if (e != null) {
+                hits.increment();
+                return e.replay();
+            }
+            misses.increment();
+            return Multi.create(producer.get());
+        })).flatMap(chunks -> chunks);
+    }
+
+    /**
+     * Send a response, the producer is invoked only if the response is not cached.
+     * <p>
+     * Responses served from the cache have an {@code ETag} header derived from the cached bytes, a request with a
+     * matching {@code If-None-Match} header gets a {@code 304} response.
+     *
+     * @param req      request
+     * @param res      response
+     * @param key      key
+     * @param producer producer of the response chunks
+     */
+    public void send(ServerRequest req,
+                     ServerResponse res,
+                     String key,
+                     Supplier<? extends Flow.Publisher<DataChunk>> producer) {
+
+        CompletableFuture<Entry> future = entries.get(key);
+        Entry entry = future != null ? future.getNow(null) : null;
+        if (entry != null) {
+            res.headers().put(Http.Header.ETAG, entry.etag);
+            if (req.headers().value(Http.Header.IF_NONE_MATCH).map(entry::matches).orElse(false)) {
+                hits.increment();
+                entry.touch();
+                res.status(Http.Status.NOT_MODIFIED_304).send();
+                return;
+            }
+        }
+        res.send(get(key, producer));
+    }
+
+    private Multi<DataChunk> record(String key, CompletableFuture<Entry> future, Flow.Publisher<DataChunk> chunks) {
+        Recording recording = new Recording();
+        return Multi.create(chunks)
+                .peek(recording)
+                .onComplete(() -> commit(key, future, recording.entry()))
+                .onError(ex -> abort(key, future))
+                .onCancel(() -> abort(key, future));
+    }
+
+    private void commit(String key, CompletableFuture<Entry> future, Entry entry) {
+        if (entry == null) {
+            abort(key, future);
+            return;
+        }
+        // accounted before it is visible, so that a concurrent removal can discard it
+        size.addAndGet(entry.size);
+        future.complete(entry);
+        if (entries.get(key) != future) {
+            discard(entry);
+        } else if (size.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    private void abort(String key, CompletableFuture<Entry> future) {
+        if (future.complete(null)) {
+            entries.remove(key, future);
+        }
+    }
+
+    private void discard(Entry entry) {
+        if (entry != null && entry.discarded.compareAndSet(false, true)) {
+            size.addAndGet(-entry.size);
+        }
+    }
+
+    /**
+     * Evict the least recently used entries until the cache fits in its budget.
+     * Every eviction scans the entries, the cache is meant for a moderate number of large responses.
+     */
+    private void evict() {
+        while (size.get() > maxBytes && evicting.compareAndSet(false, true)) {
+            try {
+                while (size.get() > maxBytes) {
+                    String lruKey = null;
+                    CompletableFuture<Entry> lruFuture = null;
+                    long lruAccessed = 0;
+                    for (Map.Entry<String, CompletableFuture<Entry>> e : entries.entrySet()) {
+                        Entry entry = e.getValue().getNow(null);
+                        if (entry != null && (lruKey == null || entry.accessed - lruAccessed < 0)) {
+                            lruKey = e.getKey();
+                            lruFuture = e.getValue();
+                            lruAccessed = entry.accessed;
+                        }
+                    }
+                    if (lruKey == null) {
+                        break;
+                    }
+                    if (entries.remove(lruKey, lruFuture)) {
+                        evictions.increment();
+                        discard(lruFuture.getNow(null));
+                    }
+                }
+            } finally {
+                evicting.set(false);
+            }
+        }
+    }
+
+    /**
+     * Copy of the chunks of a response being written.
+     * The chunks are signaled serially, the copy does not need to be thread-safe.
+     */
+    private final class Recording implements Consumer<DataChunk> {
+
+        private final List<ByteBuffer> segments = new ArrayList<>();
+        private final CRC32C crc = new CRC32C();
+        private ByteBuffer segment;
+        private long length;
+        private boolean abandoned;
+
+        @Override
+        public void accept(DataChunk chunk) {
+            if (abandoned) {
+                return;
+            }
+            for (ByteBuffer buffer : chunk.data()) {
+                length += buffer.remaining();
+                if (length > maxBytes) {
+                    // too large to be cached
+                    abandoned = true;
+                    segments.clear();
+                    segment = null;
+                    return;
+                }
+                crc.update(buffer.duplicate());
+                ByteBuffer src = buffer.duplicate();
+                while (src.hasRemaining()) {
+                    if (segment == null || !segment.hasRemaining()) {
+                        segment = ByteBuffer.allocate(SEGMENT_SIZE);
+                        segments.add(segment);
+                    }
+                    int n = Math.min(src.remaining(), segment.remaining());
+                    segment.put(src.slice(src.position(), n));
+                    src.position(src.position() + n);
+                }
+            }
+        }
+
+        /**
+         * Create the cache entry.
+         *
+         * @return entry, or {@code null} if the response is too large
+         */
+        Entry entry() {
+            if (abandoned) {
+                return null;
+            }
+            ByteBuffer[] buffers = new ByteBuffer[segments.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                ByteBuffer buffer = segments.get(i).flip();
+                if (buffer.limit() < buffer.capacity() / 2) {
+                    // trim the last segment
+                    buffer = ByteBuffer.allocate(buffer.limit()).put(buffer).flip();
+                }
+                buffers[i] = buffer.asReadOnlyBuffer();
+            }
+            String etag = "\"" + Long.toHexString(crc.getValue()) + "-" + Long.toHexString(length) + "\"";
+            return new Entry(buffers, length, etag);
+        }
+    }
+
+    /**
+     * Cached response.
+     */
+    private static final class Entry {
+
+        private final ByteBuffer[] buffers;
+        private final long size;
+        private final String etag;
+        private final AtomicBoolean discarded = new AtomicBoolean();
+        private volatile long accessed = System.nanoTime();
+
+        Entry(ByteBuffer[] buffers, long size, String etag) {
+            this.buffers = buffers;
+            this.size = size;
+            this.etag = etag;
+        }
+
+        void touch() {
+            accessed = System.nanoTime();
+        }
+
+        /**
+         * Create read-only views of the cached bytes, the views share the cached buffers.
+         *
+         * @return chunks
+         */
+        Multi<DataChunk> replay() {
+            touch();
+            DataChunk[] chunks = new DataChunk[buffers.length];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = DataChunk.create(false, true, buffers[i].duplicate());
+            }
+            return Multi.just(chunks);
+        }
+
+        /**
+         * Test an {@code If-None-Match} header value, using the weak comparison.
+         *
+         * @param ifNoneMatch header value
+         * @return {@code true} if the value matches the entity tag
+         */
+        boolean matches(String ifNoneMatch) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.acme.json.rx;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory budget of the chunks parked by {@link JsonMultiOutputStream} while there is no demand.
+ * <p>
+ * When a stream exceeds its own budget, or when all the streams sharing this instance exceed the global budget, the
+ * parked chunks are written to a temporary file instead and replayed from memory-mapped regions of the file when
+ * chunks are requested. The file is deleted when the stream completes, fails or is canceled.
+ * <p>
+ * In event queue mode, the generator events queued beyond the stream budget are written eagerly so that they can be
+ * spilled as well.
+ */
+public final class JsonSpill {
+
+    /**
+     * Estimated memory used by a queued generator event.
+     */
+    static final int EVENT_SIZE = 64;
+
+    private final AtomicLong parked = new AtomicLong();
+    private final long streamBudget;
+    private final long globalBudget;
+    private final Path directory;
+
+    private JsonSpill(Builder builder) {
+        this.streamBudget = builder.streamBudget;
+        this.globalBudget = builder.globalBudget;
+        this.directory = builder.directory;
+    }
+
+    /**
+     * Create a new spill budget that uses the default temporary directory.
+     *
+     * @param streamBudget maximum number of bytes parked in memory per stream
+     * @param globalBudget maximum number of bytes parked in memory by all the streams
+     * @return spill budget
+     */
+    public static JsonSpill create(long streamBudget, long globalBudget) {
+        return builder().streamBudget(streamBudget).globalBudget(globalBudget).build();
+    }
+
+    /**
+     * Create a new builder.
+     *
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the number of bytes parked in memory by all the streams.
+     *
+     * @return byte count
+     */
+    public long parkedBytes() {
+        return parked.get();
+    }
+
+    /**
+     * Get the maximum number of queued events per stream.
+     *
+     * @return event count
+     */
+    int maxEvents() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, streamBudget / EVENT_SIZE));
+    }
+
+    /**
+     * Test if the given number of bytes parked by a stream exceeds the budget.
+     *
+     * @param streamParked number of bytes parked by the stream
+     * @return {@code true} if over budget
+     */
+    boolean overBudget(long streamParked) {
+        return streamParked > streamBudget || parked.get() > globalBudget;
+    }
+
+    /**
+     * Update the number of bytes parked in memory.
+     *
+     * @param delta number of bytes, negative when the bytes are released
+     */
+    void parked(long delta) {
+        parked.addAndGet(delta);
+    }
+
+    /**
+     * Create a new spill file.
+     *
+     * @return file
+     * @throws IOException if an I/O error occurs
+     */
+    JsonSpillFile open() throws IOException {
+        return JsonSpillFile.create(directory);
+    }
+
+    /**
+     * Builder of {@link JsonSpill}.
+     */
+    public static final class Builder {
+
+        private long streamBudget = 1024 * 1024;
+        private long globalBudget = 256 * 1024 * 1024;
+        private Path directory;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the maximum number of bytes parked in memory per stream, the default is {@code 1MB}.
+         *
+         * @param streamBudget budget in bytes
+         * @return this builder
+         */
+        public Builder streamBudget(long streamBudget) {
+            if (streamBudget < 0) {
+                throw new IllegalArgumentException("Invalid stream budget: " + streamBudget);
+            }
+            this.streamBudget = streamBudget;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of bytes parked in memory by all the streams, the default is {@code 256MB}.
+         *
+         * @param globalBudget budget in bytes
+         * @return this builder
+         */
+        public Builder globalBudget(long globalBudget) {
+            if (globalBudget < 0) {
+                throw new IllegalArgumentException("Invalid global budget: " + globalBudget);
+            }
+            this.globalBudget = globalBudget;
+            return this;
+        }
+
+        /**
+         * Set the directory of the spill files, the default is the default temporary directory.
+         *
+         * @param directory directory
+         * @return this builder
+         */
+        public Builder directory(Path directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Build the spill budget.
+         *
+         * @return JsonSpill
+         */
+        public JsonSpill build() {
+            return new JsonSpill(this);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.acme.json.rx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Temporary file of the chunks spilled by a {@link JsonMultiOutputStream}, see {@link JsonSpill}.
+ * <p>
+ * Bytes are appended with positional writes and read back from read-only memory-mapped windows. The file is only
+ * appended to, a region is never overwritten while the chunks that map it may not have been written yet. A mapping
+ * remains valid after the file is closed and deleted, until it is garbage collected.
+ */
+final class JsonSpillFile {
+
+    private static final int WINDOW_SIZE = 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private long written;
+    private long read;
+    private MappedByteBuffer window;
+
+    private JsonSpillFile(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Create a new file.
+     *
+     * @param directory directory, {@code null} for the default temporary directory
+     * @return file
+     * @throws IOException if an I/O error occurs
+     */
+    static JsonSpillFile create(Path directory) throws IOException {
+        Path path = directory != null
+                ? Files.createTempFile(directory, "json-spill", ".tmp")
+                : Files.createTempFile("json-spill", ".tmp");
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE);
+        return new JsonSpillFile(path, channel);
+    }
+
+    /**
+     * Append the given buffers, the buffers are consumed.
+     *
+     * @param buffers buffers
+     * @return number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    long write(ByteBuffer[] buffers) throws IOException {
+        long start = written;
+        for (ByteBuffer buffer : buffers) {
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, written);
+            }
+        }
+        return written - start;
+    }
+
+    /**
+     * Test if all the written bytes have been read.
+     *
+     * @return {@code true} if empty
+     */
+    boolean isEmpty() {
+        return read == written;
+    }
+
+    /**
+     * Read the next bytes.
+     *
+     * @param max maximum number of bytes
+     * @return read-only view of the mapped file
+     * @throws IOException if an I/O error occurs
+     */
+    ByteBuffer read(int max) throws IOException {
+        if (window == null || !window.hasRemaining()) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, read, Math.min(written - read, WINDOW_SIZE));
+        }
+        int n = Math.min(max, window.remaining());
+        ByteBuffer slice = window.slice(window.position(), n);
+        window.position(window.position() + n);
+        read += n;
+        return slice;
+    }
+
+    /**
+     * Close and delete the file.
+     */
+    void close() {
+        window = null;
+        try {
+            channel.close();
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // deleted on close
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.acme.json.rx;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime metrics of {@link JsonMultiOutputStream} and of the generator event queue.
+ * <p>
+ * Values are cumulative across all the streams that share an instance. Counters are striped and lock-free, they are
+ * cheap enough to be always on. Use {@link JsonMultiOutputStream.Builder#metrics(JsonStreamMetrics)} to collect the
+ * metrics of some streams separately, streams use {@link #global()} by default.
+ */
+public final class JsonStreamMetrics {
+
+    private static final JsonStreamMetrics GLOBAL = new JsonStreamMetrics();
+
+    private final LongAdder streams = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder canceled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder eventsQueued = new LongAdder();
+    private final LongAccumulator peakQueueDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder chunksEmitted = new LongAdder();
+    private final LongAdder bytesEmitted = new LongAdder();
+    private final LongAdder chunksParked = new LongAdder();
+    private final LongAdder parkedDepth = new LongAdder();
+    private final LongAccumulator peakParkedDepth = new LongAccumulator(Math::max, 0);
+    private final LongAdder stallNanos = new LongAdder();
+    private final LongAdder bytesSpilled = new LongAdder();
+    private final LongAdder firstChunks = new LongAdder();
+    private final LongAdder firstChunkNanos = new LongAdder();
+
+    private JsonStreamMetrics() {
+    }
+
+    /**
+     * Create a new instance.
+     *
+     * @return metrics
+     */
+    public static JsonStreamMetrics create() {
+        return new JsonStreamMetrics();
+    }
+
+    /**
+     * Get the instance used by default.
+     *
+     * @return metrics
+     */
+    public static JsonStreamMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Get the number of streams created.
+     *
+     * @return stream count
+     */
+    public long streams() {
+        return streams.sum();
+    }
+
+    /**
+     * Get the number of streams completed.
+     *
+     * @return completed count
+     */
+    public long completed() {
+        return completed.sum();
+    }
+
+    /**
+     * Get the number of streams canceled by the subscriber.
+     *
+     * @return canceled count
+     */
+    public long canceled() {
+        return canceled.sum();
+    }
+
+    /**
+     * Get the number of streams failed.
+     *
+     * @return failed count
+     */
+    public long failed() {
+        return failed.sum();
+    }
+
+    /**
+     * Get the number of generator events queued.
+     *
+     * @return event count
+     */
+    public long eventsQueued() {
+        return eventsQueued.sum();
+    }
+
+    /**
+     * Get the maximum number of events queued by a single generator.
+     *
+     * @return peak queue depth
+     */
+    public long peakQueueDepth() {
+        return peakQueueDepth.get();
+    }
+
+    /**
+     * Get the number of chunks emitted, including flush chunks.
+     *
+     * @return chunk count
+     */
+    public long chunksEmitted() {
+        return chunksEmitted.sum();
+    }
+
+    /**
+     * Get the number of bytes emitted.
+     *
+     * @return byte count
+     */
+    public long bytesEmitted() {
+        return bytesEmitted.sum();
+    }
+
+    /**
+     * Get the total number of chunks parked in the overflow buffer because there was no demand, see
+     * {@link #parkedDepth()} for the chunks currently parked.
+     *
+     * @return chunk count
+     */
+    public long chunksParked() {
+        return chunksParked.sum();
+    }
+
+    /**
+     * Get the number of chunks currently held in memory in the overflow buffers, the spilled chunks are not included.
+     *
+     * @return chunk count
+     */
+    public long parkedDepth() {
+        return parkedDepth.sum();
+    }
+
+    /**
+     * Get the maximum number of chunks held in memory in the overflow buffer of a single stream.
+     *
+     * @return peak depth
+     */
+    public long peakParkedDepth() {
+        return peakParkedDepth.get();
+    }
+
+    /**
+     * Get the time spent by streams waiting for demand with pending output.
+     *
+     * @return time in nanoseconds
+     */
+    public long stallNanos() {
+        return stallNanos.sum();
+    }
+
+    /**
+     * Get the number of bytes written to spill files, see {@link JsonSpill}.
+     *
+     * @return byte count
+     */
+    public long bytesSpilled() {
+        return bytesSpilled.sum();
+    }
+
+    /**
+     * Get the number of streams that emitted a first chunk.
+     *
+     * @return stream count
+     */
+    public long firstChunks() {
+        return firstChunks.sum();
+    }
+
+    /**
+     * Get the total time between the creation of a stream and its first chunk.
+     * Divide by {@link #firstChunks()} to get the average.
+     *
+     * @return time in nanoseconds
+     */
+    public long firstChunkNanos() {
+        return firstChunkNanos.sum();
+    }
+
+    void streamCreated() {
+        streams.increment();
+    }
+
+    void streamCompleted() {
+        completed.increment();
+    }
+
+    void streamCanceled() {
+        canceled.increment();
+    }
+
+    void streamFailed() {
+        failed.increment();
+    }
+
+    void eventQueued() {
+        eventsQueued.increment();
+    }
+
+    void queueDepth(int depth) {
+        peakQueueDepth.accumulate(depth);
+    }
+
+    void chunkEmitted(int bytes) {
+        chunksEmitted.increment();
+        bytesEmitted.add(bytes);
+    }
+
+    void chunkParked() {
+        chunksParked.increment();
+    }
+
+    void chunkBuffered(int depth) {
+        parkedDepth.increment();
+        peakParkedDepth.accumulate(depth);
+    }
+
+    void chunkUnbuffered() {
+        parkedDepth.decrement();
+    }
+
+    void stalled(long nanos) {
+        stallNanos.add(nanos);
+    }
+
+    void spilled(long bytes) {
+        bytesSpilled.add(bytes);
+    }
+
+    void firstChunk(long nanos) {
+        firstChunks.increment();
+        firstChunkNanos.add(nanos);
+    }
+}
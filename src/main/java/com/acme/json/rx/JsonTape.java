@@ -0,0 +1,411 @@
+package com.acme.json.rx;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import jakarta.json.JsonException;
+
+/**
+ * Pre-rendered form of a type compiled by {@link JsonTypeWriter}, replayed by a {@link JsonGeneratorUtf8}.
+ * <p>
+ * A tape is a sequence of slots, one per property in the serialization order. Each slot has the pre-encoded bytes
+ * written before its value, e.g. {@code ,"name":}, and the getter of its value. Replaying a tape writes the byte runs
+ * and encodes only the values, there are no generator events, no name lookups and no generator state checks.
+ * {@code null} properties are skipped like with the compiled writer, the output is the same.
+ * <p>
+ * Objects whose properties are all scalars are replayed at once. Otherwise the replay yields after starting a nested
+ * object or array and after each array element, see {@link Replay#step(JsonGeneratorUtf8)}.
+ * <p>
+ * The properties are read when the tape is replayed. A replay can be deferred, e.g. queued as a single generator event,
+ * only if the object cannot be modified in the meantime, see {@link #immutable()}.
+ */
+final class JsonTape {
+
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Kind of value.
+     */
+    enum Kind {
+        INT,
+        LONG,
+        DOUBLE,
+        BOOLEAN,
+        STRING,
+        BOXED_INT,
+        BOXED_LONG,
+        BOXED_DOUBLE,
+        BOXED_BOOLEAN,
+        OBJECT,
+        ARRAY
+    }
+
+    /**
+     * Value of a slot or of an array element.
+     *
+     * @param kind    kind
+     * @param writer  compiled writer of an {@link Kind#OBJECT}, its tape is set once the type graph is compiled
+     * @param element element of an {@link Kind#ARRAY}
+     */
+    record Value(Kind kind, JsonTypeWriter writer, Value element) {
+
+        boolean scalar() {
+            return kind != Kind.OBJECT && kind != Kind.ARRAY;
+        }
+    }
+
+    /**
+     * Property of a tape.
+     *
+     * @param getter getter, returns a primitive for the primitive kinds or an {@code Object}
+     * @param value  value
+     * @param first  bytes written before the value if it is the first property written, e.g. {@code "name":}
+     * @param next   bytes written before the value otherwise, e.g. {@code ,"name":}
+     */
+    record Slot(MethodHandle getter, Value value, byte[] first, byte[] next) {
+    }
+
+    private final Slot[] slots;
+    private final boolean flat;
+    private final boolean record;
+    private volatile Boolean immutable;
+
+    private JsonTape(Slot[] slots, boolean record) {
+        this.slots = slots;
+        this.record = record;
+        boolean flat = true;
+        for (Slot slot : slots) {
+            flat &= slot.value.scalar();
+        }
+        this.flat = flat;
+    }
+
+    /**
+     * Create a tape.
+     *
+     * @param slots  slots in the serialization order
+     * @param record {@code true} if the compiled type is a record
+     * @return tape
+     */
+    static JsonTape create(Slot[] slots, boolean record) {
+        return new JsonTape(slots, record);
+    }
+
+    /**
+     * Test if the objects of this tape cannot be modified, i.e. if the compiled type is a record whose components are
+     * all scalars or such records. Collections and beans can be modified after they are written.
+     * Must be invoked once the type graph is compiled.
+     *
+     * @return {@code true} if immutable
+     */
+    boolean immutable() {
+        Boolean immutable = this.immutable;
+        if (immutable == null) {
+            immutable = immutable(new HashSet<>());
+            this.immutable = immutable;
+        }
+        return immutable;
+    }
+
+    private boolean immutable(Set<JsonTape> visited) {
+        if (!record) {
+            return false;
+        }
+        if (!visited.add(this)) {
+            // cycle, decided by the other components
+            return true;
+        }
+        for (Slot slot : slots) {
+            Value value = slot.value;
+            if (value.kind == Kind.ARRAY || (value.kind == Kind.OBJECT && !value.writer.tape().immutable(visited))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create a slot.
+     *
+     * @param name   property name
+     * @param getter getter
+     * @param value  value
+     * @return slot
+     */
+    static Slot slot(String name, MethodHandle getter, Value value) {
+        byte[] first = JsonNameCache.encode(name);
+        byte[] next = new byte[first.length + 1];
+        next[0] = ',';
+        System.arraycopy(first, 0, next, 1, first.length);
+        return new Slot(getter, value, first, next);
+    }
+
+    /**
+     * Create a replay of an object.
+     *
+     * @param object object, must be an instance of the compiled type
+     * @return replay
+     */
+    Replay replay(Object object) {
+        return new Replay(this, object);
+    }
+
+    /**
+     * Replay of an object, the nested objects and arrays being written are kept on a stack.
+     */
+    static final class Replay {
+
+        private final JsonTape tape;
+        private final Object object;
+        private Deque<Frame> frames;
+        private boolean started;
+
+        private Replay(JsonTape tape, Object object) {
+            this.tape = tape;
+            this.object = object;
+        }
+
+        /**
+         * Write the next part of the object.
+         *
+         * @param generator generator
+         * @return {@code true} if the object is written
+         */
+        boolean step(JsonGeneratorUtf8 generator) {
+            try {
+                if (!started) {
+                    started = true;
+                    generator.value();
+                    return start(generator, tape, object);
+                }
+                Frame frame = frames.peek();
+                boolean done = frame instanceof ObjectFrame objectFrame
+                        ? resume(generator, objectFrame)
+                        : resume(generator, (ArrayFrame) frame);
+                if (done) {
+                    frames.pop();
+                }
+                return frames.isEmpty();
+            } catch (RuntimeException | Error ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new JsonException(ex.getMessage(), ex);
+            } finally {
+                generator.commit();
+            }
+        }
+
+        /**
+         * Write the whole object.
+         *
+         * @param generator generator
+         */
+        void run(JsonGeneratorUtf8 generator) {
+            while (!step(generator)) {
+                // until the stack is empty
+            }
+        }
+
+        /**
+         * Start an object, a flat object is written at once.
+         *
+         * @return {@code true} if the object is written
+         */
+        private boolean start(JsonGeneratorUtf8 generator, JsonTape tape, Object object) throws Throwable {
+            generator.raw((byte) '{');
+            if (tape.flat) {
+                writeFlat(generator, tape, object);
+                return true;
+            }
+            push(new ObjectFrame(tape, object));
+            return false;
+        }
+
+        private void push(Frame frame) {
+            if (frames == null) {
+                frames = new ArrayDeque<>();
+            }
+            frames.push(frame);
+        }
+
+        private static void writeFlat(JsonGeneratorUtf8 generator, JsonTape tape, Object object) throws Throwable {
+            boolean first = true;
+            for (Slot slot : tape.slots) {
+                if (writeScalar(generator, slot, object, first)) {
+                    first = false;
+                }
+            }
+            generator.raw((byte) '}');
+        }
+
+        /**
+         * Write the remaining properties of an object, until a nested object or array is started.
+         *
+         * @return {@code true} if the object is written
+         */
+        private boolean resume(JsonGeneratorUtf8 generator, ObjectFrame frame) throws Throwable {
+            Slot[] slots = frame.tape.slots;
+            while (frame.index < slots.length) {
+                Slot slot = slots[frame.index++];
+                if (slot.value.scalar()) {
+                    if (writeScalar(generator, slot, frame.object, frame.first)) {
+                        frame.first = false;
+                    }
+                    continue;
+                }
+                Object value = (Object) slot.getter.invokeExact(frame.object);
+                if (value == null) {
+                    continue;
+                }
+                generator.raw(frame.first ? slot.first : slot.next);
+                frame.first = false;
+                if (startNested(generator, slot.value, value)) {
+                    return false;
+                }
+            }
+            generator.raw((byte) '}');
+            return true;
+        }
+
+        /**
+         * Write the next element of an array.
+         *
+         * @return {@code true} if the array is written
+         */
+        private boolean resume(JsonGeneratorUtf8 generator, ArrayFrame frame) throws Throwable {
+            if (!frame.iterator.hasNext()) {
+                generator.raw((byte) ']');
+                return true;
+            }
+            Object item = frame.iterator.next();
+            if (frame.first) {
+                frame.first = false;
+            } else {
+                generator.raw((byte) ',');
+            }
+            Value element = frame.element;
+            if (item == null) {
+                generator.raw(NULL);
+            } else if (element.scalar()) {
+                writeScalar(generator, element.kind, item);
+            } else {
+                startNested(generator, element, item);
+            }
+            return false;
+        }
+
+        /**
+         * Start a nested object or array, a flat object is written at once.
+         *
+         * @return {@code true} if a frame was pushed
+         */
+        private boolean startNested(JsonGeneratorUtf8 generator, Value value, Object object) throws Throwable {
+            if (value.kind == Kind.ARRAY) {
+                generator.raw((byte) '[');
+                push(new ArrayFrame(((Collection<?>) object).iterator(), value.element));
+                return true;
+            }
+            JsonTape tape = value.writer.tape();
+            generator.raw((byte) '{');
+            if (tape.flat) {
+                writeFlat(generator, tape, object);
+                return false;
+            }
+            push(new ObjectFrame(tape, object));
+            return true;
+        }
+
+        /**
+         * Write a scalar property.
+         *
+         * @return {@code true} if written, {@code false} if {@code null}
+         */
+        private static boolean writeScalar(JsonGeneratorUtf8 generator, Slot slot, Object object, boolean first)
+                throws Throwable {
+
+            MethodHandle getter = slot.getter;
+            byte[] run = first ? slot.first : slot.next;
+            switch (slot.value.kind) {
+                case INT -> {
+                    int value = (int) getter.invokeExact(object);
+                    generator.raw(run);
+                    generator.number(value);
+                }
+                case LONG -> {
+                    long value = (long) getter.invokeExact(object);
+                    generator.raw(run);
+                    generator.number(value);
+                }
+                case DOUBLE -> {
+                    double value = (double) getter.invokeExact(object);
+                    generator.raw(run);
+                    generator.number(value);
+                }
+                case BOOLEAN -> {
+                    boolean value = (boolean) getter.invokeExact(object);
+                    generator.raw(run);
+                    generator.raw(value ? TRUE : FALSE);
+                }
+                default -> {
+                    Object value = (Object) getter.invokeExact(object);
+                    if (value == null) {
+                        return false;
+                    }
+                    generator.raw(run);
+                    writeScalar(generator, slot.value.kind, value);
+                }
+            }
+            return true;
+        }
+
+        private static void writeScalar(JsonGeneratorUtf8 generator, Kind kind, Object value) {
+            switch (kind) {
+                case STRING -> generator.string((String) value);
+                case BOXED_INT -> generator.number(((Number) value).intValue());
+                case BOXED_LONG -> generator.number((long) (Long) value);
+                case BOXED_DOUBLE -> generator.number((double) (Double) value);
+                case BOXED_BOOLEAN -> generator.raw((Boolean) value ? TRUE : FALSE);
+                default -> throw new IllegalStateException("Unexpected kind: " + kind);
+            }
+        }
+    }
+
+    /**
+     * Object or array being written.
+     */
+    private sealed interface Frame permits ObjectFrame, ArrayFrame {
+    }
+
+    private static final class ObjectFrame implements Frame {
+
+        private final JsonTape tape;
+        private final Object object;
+        private int index;
+        private boolean first = true;
+
+        ObjectFrame(JsonTape tape, Object object) {
+            this.tape = tape;
+            this.object = object;
+        }
+    }
+
+    private static final class ArrayFrame implements Frame {
+
+        private final Iterator<?> iterator;
+        private final Value element;
+        private boolean first = true;
+
+        ArrayFrame(Iterator<?> iterator, Value element) {
+            this.iterator = iterator;
+            this.element = element;
+        }
+    }
+}
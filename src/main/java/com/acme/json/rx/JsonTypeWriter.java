@@ -0,0 +1,539 @@
+package com.acme.json.rx;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import jakarta.json.JsonException;
+import jakarta.json.stream.JsonGenerator;
+
+/**
+ * Writer of the properties of a record or a bean, compiled once per type into {@link MethodHandle} getters.
+ * The properties are written directly to a {@link JsonGenerator}, without any reflection or serializer lookup.
+ * <p>
+ * Compiled writers follow the default Jsonb mapping: properties are written in lexicographical order and
+ * {@code null} properties are skipped. A type is not supported if it uses Jsonb annotations, if it is not a record or
+ * a final class, or if it has properties of types other than {@code String}, {@code int}, {@code long},
+ * {@code double}, {@code boolean} (and their wrappers), collections, or nested supported types.
+ * <p>
+ * Each compiled type also has a {@link JsonTape}, used when writing to a {@link JsonGeneratorUtf8}. With a
+ * {@link JsonGeneratorRx} an immutable object is queued as a single event and its properties are read when the event
+ * is written, other objects are queued as events holding their property values, see {@link JsonTape#immutable()}.
+ */
+final class JsonTypeWriter {
+
+    /**
+     * Marker of the types that are not supported.
+     */
+    static final JsonTypeWriter UNSUPPORTED = new JsonTypeWriter();
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final String JSONB_ANNOTATIONS = "jakarta.json.bind.annotation.";
+
+    /**
+     * Write a property of an object.
+     */
+    private interface PropertyWriter {
+
+        void write(JsonGenerator generator, Object object) throws Throwable;
+    }
+
+    /**
+     * Write a non {@code null} value.
+     */
+    private interface ValueWriter {
+
+        void write(JsonGenerator generator, Object value) throws Throwable;
+    }
+
+    /**
+     * Estimate the serialized size of a property value.
+     */
+    interface ValueEstimator {
+
+        long estimate(Object value, long max);
+    }
+
+    /**
+     * Property of a type being compiled.
+     *
+     * @param name   property name
+     * @param getter getter
+     * @param type   generic type of the property
+     */
+    private record Property(String name, MethodHandle getter, Type type) {
+    }
+
+    // set once the nested types are compiled, a type may reference itself
+    private PropertyWriter[] properties;
+    private String[] names;
+    private MethodHandle[] getters;
+    private boolean[] collections;
+    private JsonTape tape;
+
+    private JsonTypeWriter() {
+    }
+
+    /**
+     * Compile a writer for the given type.
+     *
+     * @param type     type
+     * @param compiled writers compiled so far in the type graph
+     * @return writer, {@link #UNSUPPORTED} if the type is not supported
+     */
+    static JsonTypeWriter compile(Class<?> type, Map<Class<?>, JsonTypeWriter> compiled) {
+        JsonTypeWriter writer = compileType(type, compiled);
+        return writer != null ? writer : UNSUPPORTED;
+    }
+
+    /**
+     * Get the tape of the compiled type.
+     *
+     * @return tape
+     */
+    JsonTape tape() {
+        return tape;
+    }
+
+    /**
+     * Write an object.
+     * The object is written with the tape if the generator writes UTF-8 JSON, the replay is deferred only if the
+     * object is immutable.
+     *
+     * @param generator generator
+     * @param object    object, must be an instance of the compiled type
+     */
+    void write(JsonGenerator generator, Object object) {
+        if (generator instanceof JsonGeneratorRx rx && rx.tapes() && tape.immutable()) {
+            rx.writeTape(tape.replay(object));
+            return;
+        }
+        if (generator instanceof JsonGeneratorUtf8 utf8) {
+            tape.replay(object).run(utf8);
+            return;
+        }
+        try {
+            generator.writeStartObject();
+            writeProperties(generator, object);
+            generator.writeEnd();
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new JsonException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Write an object, the list properties of at least the given number of items are written as empty arrays.
+     * The callback is invoked with the items of each of these lists once the start of the array is written, e.g. to
+     * serialize the items separately. Only the properties of the object are split, not the nested objects.
+     *
+     * @param generator generator
+     * @param object    object, must be an instance of the compiled type
+     * @param threshold minimum number of items
+     * @param split     callback invoked with the items of each large list
+     */
+    void write(JsonGenerator generator, Object object, int threshold, Consumer<List<?>> split) {
+        try {
+            generator.writeStartObject();
+            for (int i = 0; i < properties.length; i++) {
+                if (collections[i]
+                        && getters[i].invokeExact(object) instanceof List<?> list
+                        && list.size() >= threshold) {
+                    generator.writeStartArray(names[i]);
+                    split.accept(list);
+                    generator.writeEnd();
+                } else {
+                    properties[i].write(generator, object);
+                }
+            }
+            generator.writeEnd();
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new JsonException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Estimate the serialized size of an object, the estimate stops once it exceeds the given maximum.
+     * The property values are boxed, this is meant for small objects.
+     *
+     * @param object    object, must be an instance of the compiled type
+     * @param max       maximum
+     * @param estimator estimator of the property values
+     * @return estimated size in bytes
+     */
+    long estimate(Object object, long max, ValueEstimator estimator) {
+        long size = 2;
+        try {
+            for (int i = 0; i < getters.length && size <= max; i++) {
+                Object value = getters[i].invokeExact(object);
+                if (value != null) {
+                    size += names[i].length() + 4 + estimator.estimate(value, max - size);
+                }
+            }
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new JsonException(ex.getMessage(), ex);
+        }
+        return size;
+    }
+
+    private void writeProperties(JsonGenerator generator, Object object) throws Throwable {
+        for (PropertyWriter property : properties) {
+            property.write(generator, object);
+        }
+    }
+
+    private static JsonTypeWriter compileType(Class<?> type, Map<Class<?>, JsonTypeWriter> compiled) {
+        JsonTypeWriter writer = compiled.get(type);
+        if (writer != null) {
+            return writer;
+        }
+        if (!type.isRecord() && !bean(type) || annotated(type)) {
+            return null;
+        }
+        writer = new JsonTypeWriter();
+        compiled.put(type, writer);
+        List<Property> properties = type.isRecord() ? recordProperties(type) : beanProperties(type);
+        if (properties == null) {
+            return null;
+        }
+        properties.sort(Comparator.comparing(Property::name));
+        PropertyWriter[] writers = new PropertyWriter[properties.size()];
+        String[] names = new String[writers.length];
+        MethodHandle[] getters = new MethodHandle[writers.length];
+        boolean[] collections = new boolean[writers.length];
+        JsonTape.Slot[] slots = new JsonTape.Slot[writers.length];
+        for (int i = 0; i < writers.length; i++) {
+            Property property = properties.get(i);
+            writers[i] = property(property.name, property.getter, property.type, compiled);
+            if (writers[i] == null) {
+                return null;
+            }
+            names[i] = property.name;
+            getters[i] = property.getter.asType(OBJECT_GETTER);
+            collections[i] = property.type instanceof ParameterizedType parameterized
+                    && parameterized.getRawType() != Set.class;
+            slots[i] = slot(property, compiled);
+        }
+        writer.properties = writers;
+        writer.names = names;
+        writer.getters = getters;
+        writer.collections = collections;
+        writer.tape = JsonTape.create(slots, type.isRecord());
+        return writer;
+    }
+
+    private static boolean bean(Class<?> type) {
+        int modifiers = type.getModifiers();
+        return Modifier.isFinal(modifiers)
+                && !type.isArray()
+                && !type.isEnum()
+                && !type.isPrimitive()
+                && !type.getName().startsWith("java.");
+    }
+
+    private static List<Property> recordProperties(Class<?> type) {
+        List<Property> properties = new ArrayList<>();
+        for (RecordComponent component : type.getRecordComponents()) {
+            Method accessor = component.getAccessor();
+            if (annotated(component) || annotated(accessor) || annotated(field(type, component.getName()))) {
+                return null;
+            }
+            MethodHandle getter = getter(accessor);
+            if (getter == null) {
+                return null;
+            }
+            properties.add(new Property(component.getName(), getter, component.getGenericType()));
+        }
+        return properties;
+    }
+
+    private static List<Property> beanProperties(Class<?> type) {
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers)) {
+                    continue;
+                }
+                // public and transient fields have their own mapping rules
+                if (Modifier.isPublic(modifiers) || Modifier.isTransient(modifiers) || annotated(field)) {
+                    return null;
+                }
+            }
+        }
+        List<Property> properties = new ArrayList<>();
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())
+                    || method.isBridge()
+                    || method.isSynthetic()
+                    || method.getParameterCount() != 0
+                    || method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            String name = propertyName(method);
+            if (name == null) {
+                continue;
+            }
+            if (annotated(method)) {
+                return null;
+            }
+            MethodHandle getter = getter(method);
+            if (getter == null) {
+                return null;
+            }
+            properties.add(new Property(name, getter, method.getGenericReturnType()));
+        }
+        return properties;
+    }
+
+    private static String propertyName(Method method) {
+        String name = method.getName();
+        Class<?> returnType = method.getReturnType();
+        int prefix;
+        if (name.startsWith("get") && name.length() > 3 && returnType != void.class) {
+            prefix = 3;
+        } else if (name.startsWith("is") && name.length() > 2 && returnType == boolean.class) {
+            prefix = 2;
+        } else {
+            return null;
+        }
+        return Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1);
+    }
+
+    private static Field field(Class<?> type, String name) {
+        try {
+            return type.getDeclaredField(name);
+        } catch (NoSuchFieldException ex) {
+            return null;
+        }
+    }
+
+    private static boolean annotated(AnnotatedElement element) {
+        if (element == null) {
+            return false;
+        }
+        for (Annotation annotation : element.getAnnotations()) {
+            if (annotation.annotationType().getName().startsWith(JSONB_ANNOTATIONS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static MethodHandle getter(Method method) {
+        try {
+            if (!method.trySetAccessible()) {
+                return null;
+            }
+            return LOOKUP.unreflect(method);
+        } catch (IllegalAccessException | SecurityException ex) {
+            return null;
+        }
+    }
+
+    private static PropertyWriter property(String name,
+                                           MethodHandle getter,
+                                           Type type,
+                                           Map<Class<?>, JsonTypeWriter> compiled) {
+
+        // primitives are not boxed
+        if (type == int.class || type == short.class || type == byte.class) {
+            MethodHandle mh = getter.asType(MethodType.methodType(int.class, Object.class));
+            return (generator, object) -> generator.write(name, (int) mh.invokeExact(object));
+        }
+        if (type == long.class) {
+            MethodHandle mh = getter.asType(MethodType.methodType(long.class, Object.class));
+            return (generator, object) -> generator.write(name, (long) mh.invokeExact(object));
+        }
+        if (type == double.class) {
+            MethodHandle mh = getter.asType(MethodType.methodType(double.class, Object.class));
+            return (generator, object) -> generator.write(name, (double) mh.invokeExact(object));
+        }
+        if (type == boolean.class) {
+            MethodHandle mh = getter.asType(MethodType.methodType(boolean.class, Object.class));
+            return (generator, object) -> generator.write(name, (boolean) mh.invokeExact(object));
+        }
+        ValueWriter writer = namedValue(name, type, compiled);
+        if (writer == null) {
+            return null;
+        }
+        MethodHandle mh = getter.asType(OBJECT_GETTER);
+        return (generator, object) -> {
+            Object value = mh.invokeExact(object);
+            if (value != null) {
+                writer.write(generator, value);
+            }
+        };
+    }
+
+    private static ValueWriter namedValue(String name, Type type, Map<Class<?>, JsonTypeWriter> compiled) {
+        if (type == String.class) {
+            return (generator, value) -> generator.write(name, (String) value);
+        }
+        if (type == Integer.class || type == Short.class || type == Byte.class) {
+            return (generator, value) -> generator.write(name, ((Number) value).intValue());
+        }
+        if (type == Long.class) {
+            return (generator, value) -> generator.write(name, (long) (Long) value);
+        }
+        if (type == Double.class) {
+            return (generator, value) -> generator.write(name, (double) (Double) value);
+        }
+        if (type == Boolean.class) {
+            return (generator, value) -> generator.write(name, (boolean) (Boolean) value);
+        }
+        ValueWriter elements = elements(type, compiled);
+        if (elements != null) {
+            return (generator, value) -> {
+                generator.writeStartArray(name);
+                elements.write(generator, value);
+                generator.writeEnd();
+            };
+        }
+        if (type instanceof Class<?> clazz) {
+            JsonTypeWriter writer = compileType(clazz, compiled);
+            if (writer != null) {
+                return (generator, value) -> {
+                    generator.writeStartObject(name);
+                    writer.writeProperties(generator, value);
+                    generator.writeEnd();
+                };
+            }
+        }
+        return null;
+    }
+
+    private static ValueWriter value(Type type, Map<Class<?>, JsonTypeWriter> compiled) {
+        if (type == String.class) {
+            return (generator, value) -> generator.write((String) value);
+        }
+        if (type == Integer.class || type == Short.class || type == Byte.class) {
+            return (generator, value) -> generator.write(((Number) value).intValue());
+        }
+        if (type == Long.class) {
+            return (generator, value) -> generator.write((long) (Long) value);
+        }
+        if (type == Double.class) {
+            return (generator, value) -> generator.write((double) (Double) value);
+        }
+        if (type == Boolean.class) {
+            return (generator, value) -> generator.write((boolean) (Boolean) value);
+        }
+        ValueWriter elements = elements(type, compiled);
+        if (elements != null) {
+            return (generator, value) -> {
+                generator.writeStartArray();
+                elements.write(generator, value);
+                generator.writeEnd();
+            };
+        }
+        if (type instanceof Class<?> clazz) {
+            JsonTypeWriter writer = compileType(clazz, compiled);
+            if (writer != null) {
+                return (generator, value) -> {
+                    generator.writeStartObject();
+                    writer.writeProperties(generator, value);
+                    generator.writeEnd();
+                };
+            }
+        }
+        return null;
+    }
+
+    private static JsonTape.Slot slot(Property property, Map<Class<?>, JsonTypeWriter> compiled) {
+        Type type = property.type;
+        JsonTape.Kind kind;
+        Class<?> returnType;
+        if (type == int.class || type == short.class || type == byte.class) {
+            kind = JsonTape.Kind.INT;
+            returnType = int.class;
+        } else if (type == long.class) {
+            kind = JsonTape.Kind.LONG;
+            returnType = long.class;
+        } else if (type == double.class) {
+            kind = JsonTape.Kind.DOUBLE;
+            returnType = double.class;
+        } else if (type == boolean.class) {
+            kind = JsonTape.Kind.BOOLEAN;
+            returnType = boolean.class;
+        } else {
+            MethodHandle getter = property.getter.asType(OBJECT_GETTER);
+            return JsonTape.slot(property.name, getter, tapeValue(type, compiled));
+        }
+        MethodHandle getter = property.getter.asType(MethodType.methodType(returnType, Object.class));
+        return JsonTape.slot(property.name, getter, new JsonTape.Value(kind, null, null));
+    }
+
+    // the type is known to be supported, see value
+    private static JsonTape.Value tapeValue(Type type, Map<Class<?>, JsonTypeWriter> compiled) {
+        if (type == String.class) {
+            return new JsonTape.Value(JsonTape.Kind.STRING, null, null);
+        }
+        if (type == Integer.class || type == Short.class || type == Byte.class) {
+            return new JsonTape.Value(JsonTape.Kind.BOXED_INT, null, null);
+        }
+        if (type == Long.class) {
+            return new JsonTape.Value(JsonTape.Kind.BOXED_LONG, null, null);
+        }
+        if (type == Double.class) {
+            return new JsonTape.Value(JsonTape.Kind.BOXED_DOUBLE, null, null);
+        }
+        if (type == Boolean.class) {
+            return new JsonTape.Value(JsonTape.Kind.BOXED_BOOLEAN, null, null);
+        }
+        if (type instanceof ParameterizedType parameterized) {
+            JsonTape.Value element = tapeValue(parameterized.getActualTypeArguments()[0], compiled);
+            return new JsonTape.Value(JsonTape.Kind.ARRAY, null, element);
+        }
+        return new JsonTape.Value(JsonTape.Kind.OBJECT, compileType((Class<?>) type, compiled), null);
+    }
+
+    /**
+     * Create a writer of the elements of a collection, without the enclosing array.
+     *
+     * @param type     collection type
+     * @param compiled writers compiled so far in the type graph
+     * @return writer, or {@code null} if the type is not a supported collection
+     */
+    private static ValueWriter elements(Type type, Map<Class<?>, JsonTypeWriter> compiled) {
+        if (!(type instanceof ParameterizedType parameterized)
+                || !(parameterized.getRawType() == List.class
+                     || parameterized.getRawType() == Set.class
+                     || parameterized.getRawType() == Collection.class)) {
+            return null;
+        }
+        ValueWriter element = value(parameterized.getActualTypeArguments()[0], compiled);
+        if (element == null) {
+            return null;
+        }
+        return (generator, value) -> {
+            for (Object item : (Collection<?>) value) {
+                if (item == null) {
+                    generator.writeNull();
+                } else {
+                    element.write(generator, item);
+                }
+            }
+        };
+    }
+}
@@ -14,13 +14,30 @@ public final class Main {
     }
 
     static Single<WebServer> startServer() {
+        return startServer(8080);
+    }
+
+    /**
+     * Start the server.
+     *
+     * @param port port, {@code 0} for an ephemeral port
+     * @return server
+     */
+    public static Single<WebServer> startServer(int port) {
 
         // load logging configuration
         LogConfig.configureRuntime();
 
+        TestService service = new TestService();
         WebServer server = WebServer.builder()
-                .routing(r -> r.register(new TestService()))
-                .port(8080)
+                .routing(r -> r.register(service))
+                .addMediaSupport(JsonMediaSupport.builder()
+                        .provider(service.jsonProviderRx)
+                        .jsonb(service.jsonb)
+                        .cbor(true)
+                        .compiled(true)
+                        .build())
+                .port(port)
                 .backpressureBufferSize(128)
                 .build();
 
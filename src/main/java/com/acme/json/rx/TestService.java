@@ -1,8 +1,15 @@
 package com.acme.json.rx;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import io.helidon.common.http.MediaType;
+import io.helidon.common.reactive.Multi;
 
 import io.helidon.webserver.Routing;
 import io.helidon.webserver.Service;
@@ -14,6 +21,8 @@ import jakarta.json.spi.JsonProvider;
 @SuppressWarnings("SpellCheckingInspection")
 public class TestService implements Service {
 
+    private static final MediaType APPLICATION_CBOR = MediaType.create("application", "cbor");
+
     private static final String[] FIRST_NAMES = new String[] {
             "Athena", "Breanne", "Cindy", "Claribel", "Dash",
             "Everly", "Gallagher", "Giles", "Giselle", "Jewell", "Joy",
@@ -42,31 +51,173 @@ public class TestService implements Service {
     };
 
     final JsonProvider jsonProvider = JsonProvider.provider();
+    final JsonProviderRx jsonProviderRx = JsonProviderRx.create(jsonProvider);
     final Jsonb jsonb = JsonbBuilder.newBuilder()
-            .withProvider(JsonProviderRx.create(jsonProvider))
+            .withProvider(jsonProviderRx)
+            .build();
+    final JsonProviderRx jsonProviderUtf8 = JsonProviderRx.create(jsonProvider, JsonProviderRx.Backend.UTF8);
+    final Jsonb jsonbUtf8 = JsonbBuilder.newBuilder()
+            .withProvider(jsonProviderUtf8)
+            .build();
+    final JsonMultiWriter writer = JsonMultiWriter.builder()
+            .provider(jsonProviderRx)
+            .jsonb(jsonb)
+            .compiled(true)
+            .build();
+    final JsonMultiWriter writerUtf8 = JsonMultiWriter.builder()
+            .provider(jsonProviderUtf8)
+            .jsonb(jsonbUtf8)
+            .compiled(true)
+            .build();
+    final JsonMultiWriter parallelWriter = JsonMultiWriter.builder()
+            .provider(jsonProviderRx)
+            .jsonb(jsonb)
+            .compiled(true)
+            .parallel(10_000)
             .build();
+    final JsonMultiReader reader = JsonMultiReader.create(jsonProvider, jsonb);
+    final JsonResponseCache cache = JsonResponseCache.create(64 * 1024 * 1024);
+    final JsonSpill spill = JsonSpill.create(1024 * 1024, 256 * 1024 * 1024);
 
     final Random random = new Random();
 
     @Override
     public void update(Routing.Rules rules) {
+        rules.get("/multi", (req, res) -> {
+            int size = req.queryParams().first("size").map(Integer::parseInt).orElse(2);
+            boolean parallel = req.queryParams().first("parallel").map(Boolean::parseBoolean).orElse(false);
+            if (parallel) {
+                List<Employee> employees = Stream.generate(this::employee).limit(size).toList();
+                res.send(parallelWriter.array(Map.of("name", "Acme Corp."), "employees", employees));
+            } else {
+                Multi<Employee> employees = Multi.create(Stream.generate(this::employee).limit(size));
+                res.send(writer.array(Map.of("name", "Acme Corp."), "employees", employees));
+            }
+        });
+        rules.get("/metrics", (req, res) -> {
+            JsonStreamMetrics metrics = JsonStreamMetrics.global();
+            res.send(jsonProvider.createObjectBuilder()
+                    .add("streams", metrics.streams())
+                    .add("completed", metrics.completed())
+                    .add("canceled", metrics.canceled())
+                    .add("failed", metrics.failed())
+                    .add("eventsQueued", metrics.eventsQueued())
+                    .add("peakQueueDepth", metrics.peakQueueDepth())
+                    .add("chunksEmitted", metrics.chunksEmitted())
+                    .add("bytesEmitted", metrics.bytesEmitted())
+                    .add("chunksParked", metrics.chunksParked())
+                    .add("parkedDepth", metrics.parkedDepth())
+                    .add("peakParkedDepth", metrics.peakParkedDepth())
+                    .add("stallNanos", metrics.stallNanos())
+                    .add("bytesSpilled", metrics.bytesSpilled())
+                    .add("firstChunks", metrics.firstChunks())
+                    .add("firstChunkNanos", metrics.firstChunkNanos())
+                    .build()
+                    .toString());
+        });
+        rules.get("/cached", (req, res) -> {
+            int size = req.queryParams().first("size").map(Integer::parseInt).orElse(2);
+            JsonCompression compression = req.headers().value("Accept-Encoding")
+                    .flatMap(JsonCompression::negotiate)
+                    .orElse(null);
+            res.headers().add("Vary", "Accept-Encoding");
+            String key = "company:" + size;
+            if (compression != null) {
+                res.headers().add("Content-Encoding", compression.encoding().token());
+                key += ":" + compression.encoding().token();
+            }
+            cache.send(req, res, key, () -> {
+                List<Employee> employees = Stream.generate(this::employee).limit(size).toList();
+                return JsonMultiOutputStream.builder()
+                        .compression(compression)
+                        .build()
+                        .produce(out -> writer.toJson(new Company("Acme Corp.", employees), out));
+            });
+        });
+        rules.get("/entity", (req, res) -> {
+            int size = req.queryParams().first("size").map(Integer::parseInt).orElse(2);
+            res.send(new Company("Acme Corp.", Stream.generate(this::employee).limit(size).toList()));
+        });
+        rules.post("/ingest", (req, res) -> {
+            AtomicLong count = new AtomicLong();
+            reader.array(req.content(), Employee.class)
+                    .forEach(employee -> count.incrementAndGet())
+                    .thenAccept(ignored -> res.send("{\"count\":" + count.get() + "}"))
+                    .exceptionally(ex -> {
+                        req.next(ex);
+                        return null;
+                    });
+        });
+        rules.get("/lines", (req, res) -> {
+            int size = req.queryParams().first("size").map(Integer::parseInt).orElse(2);
+            int flush = req.queryParams().first("flush").map(Integer::parseInt).orElse(0);
+            res.send(writer.lines(Stream.generate(this::employee).limit(size), flush));
+        });
         rules.get((req, res) -> {
             int size = req.queryParams().first("size").map(Integer::parseInt).orElse(2);
+            boolean blocking = req.queryParams().first("blocking").map(Boolean::parseBoolean).orElse(false);
+            boolean utf8 = req.queryParams().first("utf8").map(Boolean::parseBoolean).orElse(false);
+            boolean compiled = req.queryParams().first("compiled").map(Boolean::parseBoolean).orElse(false);
+            boolean spill = req.queryParams().first("spill").map(Boolean::parseBoolean).orElse(false);
+            JsonFlushPolicy flushPolicy = req.queryParams().first("flush")
+                    .map(TestService::flushPolicy)
+                    .orElse(JsonFlushPolicy.immediate());
             List<Employee> employees = new ArrayList<>(size);
             for (int i = 0; i < size; i++) {
-                employees.add(new Employee(
-                        FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
-                        LAST_NAMES[random.nextInt(LAST_NAMES.length)],
-                        ROLES[random.nextInt(ROLES.length)]
-                ));
+                employees.add(employee());
             }
             Company entity = new Company("Acme Corp.", employees);
-            JsonMultiOutputStream stream = JsonMultiOutputStream.create();
-            jsonb.toJson(entity, stream);
-            res.send(stream);
+            JsonCompression compression = req.headers().value("Accept-Encoding")
+                    .flatMap(JsonCompression::negotiate)
+                    .orElse(null);
+            // JSON is listed first, CBOR is selected only if preferred
+            MediaType accepted = req.headers().bestAccepted(MediaType.APPLICATION_JSON, APPLICATION_CBOR)
+                    .orElse(MediaType.APPLICATION_JSON);
+            JsonFormat format = APPLICATION_CBOR.test(accepted) ? JsonFormat.CBOR : JsonFormat.JSON;
+            res.headers().add("Vary", "Accept-Encoding");
+            res.headers().add("Vary", "Accept");
+            res.headers().add("Content-Type", format.mediaType());
+            if (compression != null) {
+                res.headers().add("Content-Encoding", compression.encoding().token());
+            }
+            JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                    .format(format)
+                    .blocking(blocking)
+                    .compression(compression)
+                    .flushPolicy(flushPolicy)
+                    .spill(spill ? this.spill : null)
+                    .build();
+            if (compiled) {
+                JsonMultiWriter writer = utf8 ? this.writerUtf8 : this.writer;
+                res.send(stream.produce(out -> writer.toJson(entity, out)));
+            } else {
+                Jsonb jsonb = utf8 ? this.jsonbUtf8 : this.jsonb;
+                res.send(stream.produce(out -> jsonb.toJson(entity, out)));
+            }
         });
     }
 
+    /**
+     * Parse a flush policy, e.g. {@code never}, {@code immediate}, {@code 8192b} or {@code 10ms}.
+     */
+    private static JsonFlushPolicy flushPolicy(String value) {
+        if (value.endsWith("ms")) {
+            return JsonFlushPolicy.interval(Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2))));
+        }
+        if (value.endsWith("b")) {
+            return JsonFlushPolicy.bytes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return value.equals("never") ? JsonFlushPolicy.never() : JsonFlushPolicy.immediate();
+    }
+
+    private Employee employee() {
+        return new Employee(
+                FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                ROLES[random.nextInt(ROLES.length)]
+        );
+    }
+
     public record Company(String name, List<Employee> employees) {
     }
 
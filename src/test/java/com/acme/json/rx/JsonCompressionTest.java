@@ -0,0 +1,173 @@
+package com.acme.json.rx;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import jakarta.json.stream.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * The compressed output must inflate to the uncompressed output.
+ */
+class JsonCompressionTest {
+
+    private static final JsonProviderRx PROVIDER_UTF8 = JsonProviderRx.create(null, JsonProviderRx.Backend.UTF8);
+
+    @Test
+    void testGzip() throws Exception {
+        JsonMultiOutputStream stream = stream(JsonCompression.create(JsonCompression.Encoding.GZIP), false);
+        String json = writeArray(stream);
+        byte[] bytes = bytes(stream);
+        byte[] plain = json.getBytes(StandardCharsets.UTF_8);
+        assertThat(bytes.length, is(lessThan(plain.length)));
+        assertThat(bytes[0], is((byte) 0x1f));
+        assertThat(bytes[1], is((byte) 0x8b));
+        assertThat(bytes[2], is((byte) 8));
+        ByteBuffer trailer = ByteBuffer.wrap(bytes, bytes.length - 8, 8).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        crc.update(plain);
+        assertThat(trailer.getInt(), is((int) crc.getValue()));
+        assertThat(trailer.getInt(), is(plain.length));
+        assertThat(inflate(new GZIPInputStream(new ByteArrayInputStream(bytes))), is(json));
+    }
+
+    @Test
+    void testDeflate() throws Exception {
+        JsonMultiOutputStream stream = stream(JsonCompression.create(JsonCompression.Encoding.DEFLATE), false);
+        String json = writeArray(stream);
+        byte[] bytes = bytes(stream);
+        assertThat(inflate(new InflaterInputStream(new ByteArrayInputStream(bytes))), is(json));
+    }
+
+    @Test
+    void testSyncFlush() throws Exception {
+        JsonCompression compression = JsonCompression.builder()
+                .encoding(JsonCompression.Encoding.GZIP)
+                .level(1)
+                .syncFlush(true)
+                .build();
+        JsonMultiOutputStream stream = stream(compression, false);
+        String json = writeArray(stream);
+        byte[] bytes = bytes(stream);
+        assertThat(inflate(new GZIPInputStream(new ByteArrayInputStream(bytes))), is(json));
+    }
+
+    @Test
+    void testBlocking() throws Exception {
+        String[] json = new String[1];
+        JsonMultiOutputStream stream = stream(JsonCompression.create(JsonCompression.Encoding.GZIP), true)
+                .produce(out -> json[0] = writeArray((JsonMultiOutputStream) out));
+        byte[] bytes = bytes(stream);
+        assertThat(inflate(new GZIPInputStream(new ByteArrayInputStream(bytes))), is(json[0]));
+    }
+
+    @Test
+    void testNegotiate() {
+        assertThat(negotiate("gzip"), is(Optional.of(JsonCompression.Encoding.GZIP)));
+        assertThat(negotiate("x-gzip"), is(Optional.of(JsonCompression.Encoding.GZIP)));
+        assertThat(negotiate("GZIP"), is(Optional.of(JsonCompression.Encoding.GZIP)));
+        assertThat(negotiate("deflate"), is(Optional.of(JsonCompression.Encoding.DEFLATE)));
+        assertThat(negotiate("deflate, gzip"), is(Optional.of(JsonCompression.Encoding.GZIP)));
+        assertThat(negotiate("gzip;q=0.8, deflate;q=0.8"), is(Optional.of(JsonCompression.Encoding.GZIP)));
+        assertThat(negotiate("gzip;q=0.5, deflate"), is(Optional.of(JsonCompression.Encoding.DEFLATE)));
+        assertThat(negotiate("br, deflate;q=0.1"), is(Optional.of(JsonCompression.Encoding.DEFLATE)));
+        assertThat(negotiate("gzip;q=0"), is(Optional.empty()));
+        assertThat(negotiate("gzip;q=0, deflate;q=0.0"), is(Optional.empty()));
+        assertThat(negotiate("*"), is(Optional.of(JsonCompression.Encoding.GZIP)));
+        assertThat(negotiate("*;q=0"), is(Optional.empty()));
+        assertThat(negotiate("*, gzip;q=0"), is(Optional.of(JsonCompression.Encoding.DEFLATE)));
+        assertThat(negotiate("gzip;q=0, *;q=0.5"), is(Optional.of(JsonCompression.Encoding.DEFLATE)));
+        assertThat(negotiate("identity"), is(Optional.empty()));
+        assertThat(negotiate("identity, *;q=0"), is(Optional.empty()));
+        assertThat(negotiate("br"), is(Optional.empty()));
+        assertThat(negotiate("gzip;q=invalid"), is(Optional.empty()));
+    }
+
+    @Test
+    void testCancelDuringDeflate() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            byte[] bytes = new byte[4096];
+            new Random(0).nextBytes(bytes);
+            for (int i = 0; i < 200; i++) {
+                JsonMultiOutputStream stream = stream(JsonCompression.create(JsonCompression.Encoding.GZIP), false);
+                TestSubscriber subscriber = new TestSubscriber();
+                stream.subscribe(subscriber);
+                subscriber.request(Long.MAX_VALUE);
+                CountDownLatch writing = new CountDownLatch(1);
+                Future<?> writer = executor.submit(() -> {
+                    try {
+                        for (int j = 0; ; j++) {
+                            stream.write(bytes);
+                            if (j == 4) {
+                                writing.countDown();
+                            }
+                        }
+                    } catch (JsonCanceledException ignored) {
+                        // stopped by the cancellation, not by the ended deflater
+                    }
+                });
+                writing.await();
+                subscriber.cancel();
+                writer.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static Optional<JsonCompression.Encoding> negotiate(String acceptEncoding) {
+        return JsonCompression.negotiate(acceptEncoding).map(JsonCompression::encoding);
+    }
+
+    private static JsonMultiOutputStream stream(JsonCompression compression, boolean blocking) {
+        return JsonMultiOutputStream.builder()
+                .chunkSize(256)
+                .compression(compression)
+                .blocking(blocking)
+                .build();
+    }
+
+    private static String writeArray(JsonMultiOutputStream stream) {
+        StringBuilder expected = new StringBuilder("[");
+        try (JsonGenerator generator = PROVIDER_UTF8.createGenerator(stream)) {
+            generator.writeStartArray();
+            for (int i = 0; i < 2000; i++) {
+                generator.write("item" + i);
+                generator.write(i);
+                expected.append(i == 0 ? "" : ",").append("\"item").append(i).append("\",").append(i);
+            }
+            generator.writeEnd();
+        }
+        return expected.append(']').toString();
+    }
+
+    private static byte[] bytes(JsonMultiOutputStream stream) throws Exception {
+        TestSubscriber subscriber = new TestSubscriber();
+        stream.subscribe(subscriber);
+        return subscriber.all();
+    }
+
+    private static String inflate(InputStream in) throws Exception {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
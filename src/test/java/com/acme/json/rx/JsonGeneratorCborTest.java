@@ -0,0 +1,254 @@
+package com.acme.json.rx;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonValue;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.spi.JsonProvider;
+import jakarta.json.stream.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * The CBOR output must decode to the same values as the output of Parsson and Yasson.
+ */
+class JsonGeneratorCborTest {
+
+    private static final JsonProvider PROVIDER = JsonProvider.provider();
+    private static final Jsonb YASSON = JsonbBuilder.create();
+    private static final JsonProviderRx PROVIDER_RX = JsonProviderRx.create(PROVIDER);
+    private static final Jsonb JSONB_RX = JsonbBuilder.newBuilder().withProvider(PROVIDER_RX).build();
+
+    @Test
+    void testEvents() throws Exception {
+        JsonMultiOutputStream stream = stream(false).produce(out -> {
+            try (JsonGenerator generator = PROVIDER_RX.createGenerator(out)) {
+                JsonGeneratorUtf8Test.writeEvents(generator);
+            }
+        });
+        assertThat(decode(stream), is(parse(JsonGeneratorUtf8Test.parsson())));
+    }
+
+    @Test
+    void testEventsBlocking() throws Exception {
+        JsonMultiOutputStream stream = stream(true).produce(out -> {
+            try (JsonGenerator generator = PROVIDER_RX.createGenerator(out)) {
+                JsonGeneratorUtf8Test.writeEvents(generator);
+            }
+        });
+        assertThat(decode(stream), is(parse(JsonGeneratorUtf8Test.parsson())));
+    }
+
+    @Test
+    void testJsonb() throws Exception {
+        TestModel.Company company = TestModel.company(50);
+        JsonMultiOutputStream stream = stream(false).produce(out -> JSONB_RX.toJson(company, out));
+        assertThat(decode(stream), is(parse(YASSON.toJson(company))));
+    }
+
+    @Test
+    void testCompiled() throws Exception {
+        TestModel.Company company = TestModel.company(50);
+        JsonMultiWriter writer = JsonMultiWriter.builder()
+                .provider(PROVIDER_RX)
+                .jsonb(JSONB_RX)
+                .compiled(true)
+                .build();
+        JsonMultiOutputStream stream = stream(false).produce(out -> writer.toJson(company, out));
+        assertThat(decode(stream), is(parse(YASSON.toJson(company))));
+    }
+
+    @Test
+    void testDecimalValue() throws Exception {
+        // not representable as a double
+        JsonValue value = PROVIDER.createArrayBuilder()
+                .add(PROVIDER.createValue(new BigDecimal("0.30000000000000000001")))
+                .add(PROVIDER.createValue(new BigDecimal("-1.50")))
+                .build();
+        JsonMultiOutputStream stream = stream(false).produce(out -> {
+            try (JsonGenerator generator = PROVIDER_RX.createGenerator(out)) {
+                generator.write(value);
+            }
+        });
+        assertThat(decode(stream), is(value));
+    }
+
+    private static JsonMultiOutputStream stream(boolean blocking) {
+        return JsonMultiOutputStream.builder()
+                .format(JsonFormat.CBOR)
+                .chunkSize(64)
+                .blocking(blocking)
+                .build();
+    }
+
+    private static JsonValue parse(String json) {
+        return PROVIDER.createReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))).readValue();
+    }
+
+    private static JsonValue decode(JsonMultiOutputStream stream) throws Exception {
+        TestSubscriber subscriber = new TestSubscriber();
+        stream.subscribe(subscriber);
+        ByteBuffer buffer = ByteBuffer.wrap(subscriber.all());
+        JsonValue value = new CborDecoder(buffer).value();
+        assertThat(buffer.remaining(), is(0));
+        return value;
+    }
+
+    /**
+     * Decoder of the subset of CBOR written by {@link JsonGeneratorCbor}.
+     */
+    private static final class CborDecoder {
+
+        private final ByteBuffer buffer;
+
+        CborDecoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        JsonValue value() {
+            int head = buffer.get() & 0xFF;
+            int major = head >>> 5;
+            int info = head & 0x1F;
+            return switch (major) {
+                case 0, 1 -> PROVIDER.createValue(new BigDecimal(integer(major, info)));
+                case 3 -> PROVIDER.createValue(text(info));
+                case 4 -> array(info);
+                case 5 -> object(info);
+                case 6 -> tagged(info);
+                case 7 -> simple(info);
+                default -> throw new IllegalStateException("Unexpected major type: " + major);
+            };
+        }
+
+        private JsonValue array(int info) {
+            JsonArrayBuilder builder = PROVIDER.createArrayBuilder();
+            if (info == 31) {
+                while (!end()) {
+                    builder.add(value());
+                }
+            } else {
+                for (long i = argument(info); i > 0; i--) {
+                    builder.add(value());
+                }
+            }
+            return builder.build();
+        }
+
+        private JsonValue object(int info) {
+            JsonObjectBuilder builder = PROVIDER.createObjectBuilder();
+            if (info != 31) {
+                throw new IllegalStateException("Expected an indefinite-length map");
+            }
+            while (!end()) {
+                int head = buffer.get() & 0xFF;
+                if (head >>> 5 != 3) {
+                    throw new IllegalStateException("Expected a text key: " + head);
+                }
+                builder.add(text(head & 0x1F), value());
+            }
+            return builder.build();
+        }
+
+        private JsonValue tagged(int info) {
+            long tag = argument(info);
+            if (tag == 4) {
+                // decimal fraction [exponent, mantissa]
+                int head = buffer.get() & 0xFF;
+                if (head != 0x82) {
+                    throw new IllegalStateException("Expected an array of two items: " + head);
+                }
+                int exponent = integer().intValueExact();
+                BigInteger mantissa = integer();
+                return PROVIDER.createValue(new BigDecimal(mantissa, -exponent));
+            }
+            return PROVIDER.createValue(new BigDecimal(bignum(tag)));
+        }
+
+        private JsonValue simple(int info) {
+            return switch (info) {
+                case 20 -> JsonValue.FALSE;
+                case 21 -> JsonValue.TRUE;
+                case 22 -> JsonValue.NULL;
+                case 26 -> PROVIDER.createValue(BigDecimal.valueOf(buffer.getFloat()));
+                case 27 -> PROVIDER.createValue(BigDecimal.valueOf(buffer.getDouble()));
+                default -> throw new IllegalStateException("Unexpected simple value: " + info);
+            };
+        }
+
+        private BigInteger integer() {
+            int head = buffer.get() & 0xFF;
+            int major = head >>> 5;
+            return major == 6 ? bignum(argument(head & 0x1F)) : integer(major, head & 0x1F);
+        }
+
+        private BigInteger integer(int major, int info) {
+            BigInteger value = new BigInteger(Long.toUnsignedString(argument(info)));
+            return switch (major) {
+                case 0 -> value;
+                case 1 -> value.not();
+                default -> throw new IllegalStateException("Expected an integer: " + major);
+            };
+        }
+
+        private BigInteger bignum(long tag) {
+            int head = buffer.get() & 0xFF;
+            if (head >>> 5 != 2) {
+                throw new IllegalStateException("Expected a byte string: " + head);
+            }
+            byte[] bytes = new byte[(int) argument(head & 0x1F)];
+            buffer.get(bytes);
+            BigInteger value = new BigInteger(1, bytes);
+            return switch ((int) tag) {
+                case 2 -> value;
+                case 3 -> value.not();
+                default -> throw new IllegalStateException("Unexpected tag: " + tag);
+            };
+        }
+
+        private String text(int info) {
+            if (info == 31) {
+                StringBuilder sb = new StringBuilder();
+                while (!end()) {
+                    int head = buffer.get() & 0xFF;
+                    sb.append(text(head & 0x1F));
+                }
+                return sb.toString();
+            }
+            byte[] bytes = new byte[(int) argument(info)];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long argument(int info) {
+            return switch (info) {
+                case 24 -> buffer.get() & 0xFF;
+                case 25 -> buffer.getShort() & 0xFFFF;
+                case 26 -> buffer.getInt() & 0xFFFFFFFFL;
+                case 27 -> buffer.getLong();
+                default -> {
+                    if (info > 23) {
+                        throw new IllegalStateException("Unexpected argument: " + info);
+                    }
+                    yield info;
+                }
+            };
+        }
+
+        private boolean end() {
+            if (buffer.get(buffer.position()) == (byte) 0xFF) {
+                buffer.get();
+                return true;
+            }
+            return false;
+        }
+    }
+}
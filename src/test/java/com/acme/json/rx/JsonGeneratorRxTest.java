@@ -0,0 +1,200 @@
+package com.acme.json.rx;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.helidon.common.http.DataChunk;
+import jakarta.json.stream.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * The events must be drained by one thread at a time, whatever the threads and the order of the signals.
+ */
+class JsonGeneratorRxTest {
+
+    private static final JsonProviderRx PROVIDER_UTF8 = JsonProviderRx.create(null, JsonProviderRx.Backend.UTF8);
+
+    @Test
+    void testConcurrentRequests() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (int i = 0; i < 50; i++) {
+                JsonMultiOutputStream stream = stream();
+                String expected = writeArray(stream, 5000);
+                Recorder recorder = new Recorder(false);
+                stream.subscribe(recorder);
+                CountDownLatch start = new CountDownLatch(1);
+                Future<?>[] requesters = new Future<?>[8];
+                for (int j = 0; j < requesters.length; j++) {
+                    requesters[j] = executor.submit(() -> {
+                        start.await();
+                        while (!recorder.result.isDone()) {
+                            recorder.subscription.request(1);
+                        }
+                        return null;
+                    });
+                }
+                start.countDown();
+                assertThat(recorder.result.get(10, TimeUnit.SECONDS), is(expected));
+                for (Future<?> requester : requesters) {
+                    requester.get(10, TimeUnit.SECONDS);
+                }
+                assertThat(recorder.overlapped, is(false));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testReentrantRequests() throws Exception {
+        JsonMultiOutputStream stream = stream();
+        String expected = writeArray(stream, 5000);
+        // each chunk is requested from onNext, the requests must not recurse into the drain loop
+        Recorder recorder = new Recorder(true);
+        stream.subscribe(recorder);
+        recorder.subscription.request(1);
+        assertThat(recorder.result.get(10, TimeUnit.SECONDS), is(expected));
+        assertThat(recorder.received.get() > 100, is(true));
+        assertThat(recorder.maxDepth - recorder.minDepth, is(lessThan(50)));
+        assertThat(recorder.overlapped, is(false));
+    }
+
+    @Test
+    void testMergedRequests() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            JsonMultiOutputStream stream = stream();
+            String expected = writeArray(stream, 5000);
+            Recorder recorder = new Recorder(false);
+            recorder.entered = new CountDownLatch(1);
+            recorder.release = new CountDownLatch(1);
+            stream.subscribe(recorder);
+            Future<Thread> drainer = executor.submit(() -> {
+                recorder.subscription.request(1);
+                return Thread.currentThread();
+            });
+            assertThat(recorder.entered.await(10, TimeUnit.SECONDS), is(true));
+            // merged into the loop of the draining thread, returns while the first chunk is being emitted
+            executor.submit(() -> recorder.subscription.request(5)).get(10, TimeUnit.SECONDS);
+            recorder.subscription.request(4);
+            assertThat(recorder.received.get(), is(1));
+            recorder.release.countDown();
+            Thread thread = drainer.get(10, TimeUnit.SECONDS);
+            assertThat(recorder.received.get(), is(10));
+            assertThat(recorder.threads, is(Set.of(thread)));
+            recorder.subscription.request(Long.MAX_VALUE);
+            assertThat(recorder.result.get(10, TimeUnit.SECONDS), is(expected));
+            assertThat(recorder.overlapped, is(false));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static JsonMultiOutputStream stream() {
+        return JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .build();
+    }
+
+    private static String writeArray(JsonMultiOutputStream stream, int size) {
+        StringBuilder expected = new StringBuilder("[");
+        JsonGenerator generator = PROVIDER_UTF8.createGenerator(stream);
+        generator.writeStartArray();
+        for (int i = 0; i < size; i++) {
+            generator.write(i);
+            expected.append(i == 0 ? "" : ",").append(i);
+        }
+        generator.writeEnd();
+        generator.close();
+        return expected.append(']').toString();
+    }
+
+    /**
+     * Subscriber that records the threads and the stack depth of the emissions.
+     */
+    private static final class Recorder implements Flow.Subscriber<DataChunk> {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger received = new AtomicInteger();
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        private final boolean reentrant;
+        private volatile Flow.Subscription subscription;
+        private volatile boolean overlapped;
+        private volatile int minDepth = Integer.MAX_VALUE;
+        private volatile int maxDepth;
+        // blocks the first emission if set
+        private volatile CountDownLatch entered;
+        private volatile CountDownLatch release;
+
+        Recorder(boolean reentrant) {
+            this.reentrant = reentrant;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(DataChunk chunk) {
+            if (active.incrementAndGet() != 1) {
+                overlapped = true;
+            }
+            try {
+                threads.add(Thread.currentThread());
+                int depth = Thread.currentThread().getStackTrace().length;
+                minDepth = Math.min(minDepth, depth);
+                maxDepth = Math.max(maxDepth, depth);
+                synchronized (bytes) {
+                    for (ByteBuffer buffer : chunk.data()) {
+                        byte[] data = new byte[buffer.remaining()];
+                        buffer.get(data);
+                        bytes.writeBytes(data);
+                    }
+                }
+                chunk.release();
+                if (received.incrementAndGet() == 1 && entered != null) {
+                    entered.countDown();
+                    release.await();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+            if (reentrant) {
+                subscription.request(1);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (bytes) {
+                result.complete(bytes.toString(StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
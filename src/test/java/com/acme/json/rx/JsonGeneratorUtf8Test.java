@@ -0,0 +1,113 @@
+package com.acme.json.rx;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.json.JsonObject;
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.spi.JsonProvider;
+import jakarta.json.stream.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import static com.acme.json.rx.TestModel.TEXT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * The output of the UTF-8 backend must be the same as Parsson and Yasson, byte for byte.
+ */
+class JsonGeneratorUtf8Test {
+
+    private static final JsonProvider PROVIDER = JsonProvider.provider();
+    private static final Jsonb YASSON = JsonbBuilder.create();
+    private static final JsonProviderRx PROVIDER_UTF8 = JsonProviderRx.create(PROVIDER, JsonProviderRx.Backend.UTF8);
+    private static final Jsonb JSONB_UTF8 = JsonbBuilder.newBuilder().withProvider(PROVIDER_UTF8).build();
+
+    @Test
+    void testEvents() throws Exception {
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .build()
+                .produce(out -> {
+                    try (JsonGenerator generator = PROVIDER_UTF8.createGenerator(out)) {
+                        writeEvents(generator);
+                    }
+                });
+        assertThat(TestSubscriber.text(stream), is(parsson()));
+    }
+
+    @Test
+    void testEventsBlocking() throws Exception {
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .blocking(true)
+                .build()
+                .produce(out -> {
+                    try (JsonGenerator generator = PROVIDER_UTF8.createGenerator(out)) {
+                        writeEvents(generator);
+                    }
+                });
+        assertThat(TestSubscriber.text(stream), is(parsson()));
+    }
+
+    @Test
+    void testJsonb() throws Exception {
+        TestModel.Company company = TestModel.company(50);
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .build()
+                .produce(out -> JSONB_UTF8.toJson(company, out));
+        assertThat(TestSubscriber.text(stream), is(YASSON.toJson(company)));
+    }
+
+    static String parsson() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = PROVIDER.createGenerator(out)) {
+            writeEvents(generator);
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    static void writeEvents(JsonGenerator generator) {
+        JsonObject value = PROVIDER.createObjectBuilder()
+                .add("text", TEXT)
+                .add("int", 1)
+                .add("decimal", new BigDecimal("-2.50"))
+                .add("big", new BigInteger("123456789012345678901234567890"))
+                .add("array", PROVIDER.createArrayBuilder()
+                        .add(true)
+                        .addNull()
+                        .add(0.1)
+                        .add(PROVIDER.createObjectBuilder()))
+                .build();
+        generator.writeStartObject()
+                .write("text", TEXT)
+                .write(TEXT, "name")
+                .write("int", Integer.MIN_VALUE)
+                .write("long", Long.MIN_VALUE)
+                .write("double", 0.1)
+                .write("exponent", 1.0E-5)
+                .write("decimal", new BigDecimal("1.50"))
+                .write("big", new BigInteger("-123456789012345678901234567890"))
+                .write("true", true)
+                .write("false", false)
+                .writeNull("null")
+                .write("value", value)
+                .writeStartArray("array")
+                .write(1)
+                .write(Long.MAX_VALUE)
+                .write(-3.25)
+                .write(TEXT)
+                .writeNull()
+                .write(value)
+                .writeStartObject()
+                .writeEnd()
+                .writeStartArray()
+                .writeEnd()
+                .writeEnd()
+                .writeEnd();
+    }
+}
@@ -0,0 +1,248 @@
+package com.acme.json.rx;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import jakarta.json.stream.JsonGenerationException;
+import jakarta.json.stream.JsonGenerator;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonMultiOutputStreamTest {
+
+    @Test
+    void testParkedDepth() throws Exception {
+        JsonStreamMetrics metrics = JsonStreamMetrics.create();
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .metrics(metrics)
+                .build();
+        TestSubscriber subscriber = new TestSubscriber();
+        stream.subscribe(subscriber);
+        // each write is a chunk
+        for (int i = 0; i < 10; i++) {
+            stream.write(new byte[64]);
+        }
+        assertThat(metrics.parkedDepth(), is(10L));
+        subscriber.request(4);
+        stream.drain();
+        assertThat(metrics.parkedDepth(), is(6L));
+        subscriber.request(6);
+        stream.drain();
+        assertThat(metrics.parkedDepth(), is(0L));
+        assertThat(subscriber.bytes().length, is(640));
+        assertThat(metrics.peakParkedDepth(), is(10L));
+        assertThat(metrics.chunksParked(), is(10L));
+    }
+
+    @Test
+    void testCancelDuringDrain() throws Exception {
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .build();
+        AtomicBoolean canceled = new AtomicBoolean();
+        stream.whenCanceled(() -> canceled.set(true));
+        JsonGenerator generator = generator(stream);
+        StringBuilder expected = new StringBuilder("[");
+        generator.writeStartArray();
+        for (int i = 0; i < 1000; i++) {
+            generator.write(i);
+            expected.append(i == 0 ? "" : ",").append(i);
+        }
+        TestSubscriber subscriber = new TestSubscriber();
+        stream.subscribe(subscriber);
+        subscriber.request(2);
+        subscriber.cancel();
+        assertThat(canceled.get(), is(true));
+        assertThat(stream.terminated(), is(true));
+        assertThrows(JsonCanceledException.class, () -> generator.write(1000));
+        String received = new String(subscriber.bytes(), StandardCharsets.UTF_8);
+        assertThat(received.length() > 0 && expected.toString().startsWith(received), is(true));
+        assertThat(subscriber.result().isDone(), is(false));
+    }
+
+    @Test
+    void testFailDuringDrain() throws Exception {
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .build();
+        AtomicBoolean canceled = new AtomicBoolean();
+        stream.whenCanceled(() -> canceled.set(true));
+        JsonGenerator generator = generator(stream);
+        generator.writeStartArray();
+        for (int i = 0; i < 1000; i++) {
+            generator.write(i);
+        }
+        // invalid, fails when drained
+        generator.write("name", "value");
+        generator.writeEnd();
+        generator.close();
+        TestSubscriber subscriber = new TestSubscriber();
+        stream.subscribe(subscriber);
+        subscriber.request(2);
+        assertThat(subscriber.result().isDone(), is(false));
+        ExecutionException ex = assertThrows(ExecutionException.class, subscriber::all);
+        assertThat(ex.getCause(), instanceOf(JsonGenerationException.class));
+        assertThat(canceled.get(), is(true));
+        assertThat(stream.terminated(), is(true));
+    }
+
+    @Test
+    void testFailBlocking() throws Exception {
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .blocking(true)
+                .build()
+                .produce(out -> {
+                    JsonGenerator generator = generator((JsonMultiOutputStream) out);
+                    generator.writeStartArray();
+                    for (int i = 0; i < 1000; i++) {
+                        generator.write(i);
+                    }
+                    throw new IllegalStateException("producer failed");
+                });
+        TestSubscriber subscriber = new TestSubscriber();
+        stream.subscribe(subscriber);
+        ExecutionException ex = assertThrows(ExecutionException.class, subscriber::all);
+        assertThat(ex.getCause().getMessage(), is("producer failed"));
+    }
+
+    @Test
+    void testFailDuringSpill() throws Exception {
+        Path directory = Files.createTempDirectory("json-spill");
+        try {
+            JsonSpill spill = JsonSpill.builder()
+                    .streamBudget(256)
+                    .directory(directory)
+                    .build();
+            JsonStreamMetrics metrics = JsonStreamMetrics.create();
+            JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                    .chunkSize(64)
+                    .spill(spill)
+                    .metrics(metrics)
+                    .build();
+            TestSubscriber subscriber = new TestSubscriber();
+            stream.subscribe(subscriber);
+            JsonGenerator generator = generator(stream);
+            generator.writeStartArray();
+            for (int i = 0; i < 10_000; i++) {
+                generator.write(i);
+            }
+            // the events over the budget are written without demand and the chunks are spilled
+            assertThat(metrics.bytesSpilled(), greaterThan(0L));
+            // invalid, fails when written
+            for (int i = 0; i < 100; i++) {
+                generator.write("name", "value");
+            }
+            ExecutionException ex = assertThrows(ExecutionException.class, subscriber::all);
+            assertThat(ex.getCause(), instanceOf(JsonGenerationException.class));
+            assertThat(metrics.failed(), is(1L));
+            assertThat(spill.parkedBytes(), is(0L));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertThat(files.count(), is(0L));
+            }
+        } finally {
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void testCancelDuringSpill() throws Exception {
+        Path directory = Files.createTempDirectory("json-spill");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            JsonSpill spill = JsonSpill.builder()
+                    .streamBudget(256)
+                    .directory(directory)
+                    .build();
+            for (int i = 0; i < 200; i++) {
+                JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                        .chunkSize(64)
+                        .spill(spill)
+                        .build();
+                TestSubscriber subscriber = new TestSubscriber();
+                stream.subscribe(subscriber);
+                CountDownLatch spilling = new CountDownLatch(1);
+                Future<?> writer = executor.submit(() -> {
+                    byte[] bytes = new byte[64];
+                    try {
+                        // each write is a chunk, the chunks past the budget are spilled
+                        for (int j = 0; ; j++) {
+                            stream.write(bytes);
+                            if (j == 8) {
+                                spilling.countDown();
+                            }
+                        }
+                    } catch (JsonCanceledException ignored) {
+                        // stopped by the cancellation
+                    }
+                });
+                spilling.await();
+                subscriber.cancel();
+                writer.get(10, TimeUnit.SECONDS);
+                assertThat(spill.parkedBytes(), is(0L));
+                try (Stream<Path> files = Files.list(directory)) {
+                    assertThat(files.count(), is(0L));
+                }
+            }
+        } finally {
+            executor.shutdown();
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Test
+    void testCancelDuringPark() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int i = 0; i < 200; i++) {
+                JsonStreamMetrics metrics = JsonStreamMetrics.create();
+                JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                        .chunkSize(64)
+                        .metrics(metrics)
+                        .build();
+                TestSubscriber subscriber = new TestSubscriber();
+                stream.subscribe(subscriber);
+                CountDownLatch parking = new CountDownLatch(1);
+                Future<?> writer = executor.submit(() -> {
+                    byte[] bytes = new byte[64];
+                    try {
+                        // each write is a chunk parked in memory, without a spill budget
+                        for (int j = 0; ; j++) {
+                            stream.write(bytes);
+                            if (j == 8) {
+                                parking.countDown();
+                            }
+                        }
+                    } catch (JsonCanceledException ignored) {
+                        // stopped by the cancellation
+                    }
+                });
+                parking.await();
+                subscriber.cancel();
+                writer.get(10, TimeUnit.SECONDS);
+                assertThat(metrics.parkedDepth(), is(0L));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static JsonGenerator generator(JsonMultiOutputStream stream) {
+        return JsonProviderRx.create(null, JsonProviderRx.Backend.UTF8).createGenerator(stream);
+    }
+}
@@ -0,0 +1,102 @@
+package com.acme.json.rx;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.spi.JsonProvider;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * The segments serialized in parallel must be emitted in order, the output must be the same as Yasson.
+ */
+class JsonMultiWriterTest {
+
+    private static final Jsonb YASSON = JsonbBuilder.create();
+    private static final JsonProviderRx PROVIDER_UTF8 = JsonProviderRx.create(JsonProvider.provider(),
+            JsonProviderRx.Backend.UTF8);
+    private static final JsonMultiWriter WRITER = JsonMultiWriter.builder()
+            .provider(PROVIDER_UTF8)
+            .jsonb(JsonbBuilder.newBuilder().withProvider(PROVIDER_UTF8).build())
+            .compiled(true)
+            .parallel(10)
+            .segmentSize(7)
+            .build();
+
+    @Test
+    void testParallelArray() throws Exception {
+        List<TestModel.Employee> employees = TestModel.company(100).employees();
+        assertThat(TestSubscriber.text(WRITER.array(employees)), is(YASSON.toJson(employees)));
+    }
+
+    @Test
+    void testParallelObject() throws Exception {
+        // the list property of the entity is split in segments
+        TestModel.Company company = TestModel.company(100);
+        assertThat(TestSubscriber.text(WRITER.object(company)), is(YASSON.toJson(company)));
+    }
+
+    @Test
+    void testCancel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            JsonMultiWriter writer = JsonMultiWriter.builder()
+                    .provider(PROVIDER_UTF8)
+                    .jsonb(JsonbBuilder.newBuilder().withProvider(PROVIDER_UTF8).build())
+                    .compiled(true)
+                    .parallel(10)
+                    .segmentSize(100)
+                    .parallelism(4)
+                    .executor(executor)
+                    .build();
+            List<Item> items = new ArrayList<>();
+            for (int i = 0; i < 100_000; i++) {
+                items.add(new Item(i));
+            }
+            TestSubscriber subscriber = new TestSubscriber();
+            writer.array(items).subscribe(subscriber);
+            subscriber.request(2);
+            while (Item.SERIALIZED.get() == 0) {
+                Thread.onSpinWait();
+            }
+            subscriber.cancel();
+            int count = Item.SERIALIZED.get();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS), is(true));
+            // the segments being serialized stop at the next item, no segment is launched
+            assertThat(Item.SERIALIZED.get() - count, is(lessThanOrEqualTo(4)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testSequential() throws Exception {
+        // under the threshold
+        List<TestModel.Employee> employees = TestModel.company(5).employees();
+        assertThat(TestSubscriber.text(WRITER.array(employees)), is(YASSON.toJson(employees)));
+    }
+
+    public record Item(int id) {
+
+        static final AtomicInteger SERIALIZED = new AtomicInteger();
+
+        @Override
+        public int id() {
+            // slow enough to cancel while the segments are serialized
+            LockSupport.parkNanos(10_000);
+            SERIALIZED.incrementAndGet();
+            return id;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.acme.json.rx;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParsingException;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * The events must not depend on how the input is split into chunks.
+ */
+class JsonParserRxTest {
+
+    private static final String JSON = " {\"a\" : [1, -0, -2.5e3, 1E+2, 0.001, 12345678901234567890, true, false, null,"
+            + " \"x\\n\\\"\\\\\\/\\u00e9\\ud83d\\ude00\", \"\u00e9\u4e2d\ud83d\ude00\"], \"b\":{}, \"c\":[ ], \"\u4e2d\":{\"d\":[[]]}} ";
+    private static final List<String> EVENTS = List.of(
+            "START_OBJECT", "KEY_NAME(a)", "START_ARRAY",
+            "VALUE_NUMBER(1,true)", "VALUE_NUMBER(-0,true)", "VALUE_NUMBER(-2.5e3,false)", "VALUE_NUMBER(1E+2,false)",
+            "VALUE_NUMBER(0.001,false)", "VALUE_NUMBER(12345678901234567890,true)",
+            "VALUE_TRUE", "VALUE_FALSE", "VALUE_NULL",
+            "VALUE_STRING(x\n\"\\/\u00e9\ud83d\ude00)", "VALUE_STRING(\u00e9\u4e2d\ud83d\ude00)", "END_ARRAY",
+            "KEY_NAME(b)", "START_OBJECT", "END_OBJECT",
+            "KEY_NAME(c)", "START_ARRAY", "END_ARRAY",
+            "KEY_NAME(\u4e2d)", "START_OBJECT", "KEY_NAME(d)", "START_ARRAY", "START_ARRAY", "END_ARRAY", "END_ARRAY",
+            "END_OBJECT", "END_OBJECT");
+
+    @Test
+    void testEvents() {
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        assertThat(events(bytes, false, bytes.length), is(EVENTS));
+        assertThat(events(bytes, false, 1), is(EVENTS));
+    }
+
+    @Test
+    void testChunkBoundaries() {
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= bytes.length; split++) {
+            assertThat("split at " + split, events(bytes, false, split, bytes.length), is(EVENTS));
+        }
+    }
+
+    @Test
+    void testDocumentsChunkBoundaries() {
+        byte[] bytes = "{\"a\":1}\n[2, \"\u00e9\"]\n3\n\"\u4e2d\" 4.5".getBytes(StandardCharsets.UTF_8);
+        List<String> expected = List.of(
+                "START_OBJECT", "KEY_NAME(a)", "VALUE_NUMBER(1,true)", "END_OBJECT",
+                "START_ARRAY", "VALUE_NUMBER(2,true)", "VALUE_STRING(\u00e9)", "END_ARRAY",
+                "VALUE_NUMBER(3,true)", "VALUE_STRING(\u4e2d)", "VALUE_NUMBER(4.5,false)");
+        for (int split = 0; split <= bytes.length; split++) {
+            assertThat("split at " + split, events(bytes, true, split, bytes.length), is(expected));
+        }
+        assertThat(events(bytes, true, 1), is(expected));
+    }
+
+    @Test
+    void testValueChunkBoundaries() {
+        byte[] bytes = " [ {\"n\":\"a]\\\"}\"} , 12 ,[1,[2]],\"s\" ,null, \"\u00e9\" ] ".getBytes(StandardCharsets.UTF_8);
+        List<String> expected = List.of("{\"n\":\"a]\\\"}\"}", "12", "[1,[2]]", "\"s\"", "null", "\"\u00e9\"");
+        for (int split = 0; split <= bytes.length; split++) {
+            assertThat("split at " + split, values(bytes, split), is(expected));
+        }
+    }
+
+    @Test
+    void testTruncated() {
+        byte[] bytes = JSON.getBytes(StandardCharsets.UTF_8);
+        for (int end : new int[] {1, 10, 30, bytes.length - 3}) {
+            assertThrows(JsonParsingException.class, () -> events(bytes, false, end, end));
+        }
+    }
+
+    /**
+     * Parse the input fed in chunks of the given size.
+     */
+    private static List<String> events(byte[] bytes, boolean documents, int size) {
+        JsonParserRx parser = new JsonParserRx(null, documents);
+        List<String> events = new ArrayList<>();
+        int off = 0;
+        while (true) {
+            JsonParser.Event event = parser.poll();
+            if (event != null) {
+                events.add(event(parser, event));
+            } else if (off < bytes.length) {
+                int n = Math.min(size, bytes.length - off);
+                parser.feed(ByteBuffer.wrap(bytes, off, n));
+                off += n;
+            } else if (!parser.ended()) {
+                parser.endOfInput();
+            } else {
+                return events;
+            }
+        }
+    }
+
+    /**
+     * Parse the input fed in two chunks, split at the given position and ended at the given position.
+     */
+    private static List<String> events(byte[] bytes, boolean documents, int split, int end) {
+        JsonParserRx parser = new JsonParserRx(null, documents);
+        List<String> events = new ArrayList<>();
+        parser.feed(ByteBuffer.wrap(bytes, 0, split));
+        poll(parser, events);
+        parser.feed(ByteBuffer.wrap(bytes, split, end - split));
+        poll(parser, events);
+        parser.endOfInput();
+        poll(parser, events);
+        return events;
+    }
+
+    private static void poll(JsonParserRx parser, List<String> events) {
+        JsonParser.Event event;
+        while ((event = parser.poll()) != null) {
+            events.add(event(parser, event));
+        }
+    }
+
+    private static String event(JsonParserRx parser, JsonParser.Event event) {
+        return switch (event) {
+            case KEY_NAME, VALUE_STRING -> event + "(" + parser.getString() + ")";
+            case VALUE_NUMBER -> event + "(" + parser.getString() + "," + parser.isIntegralNumber() + ")";
+            default -> event.toString();
+        };
+    }
+
+    /**
+     * Read the bytes of the elements of an array fed in two chunks, split at the given position.
+     */
+    private static List<String> values(byte[] bytes, int split) {
+        JsonParserRx parser = new JsonParserRx(null, false);
+        Deque<ByteBuffer> chunks = new ArrayDeque<>(List.of(
+                ByteBuffer.wrap(bytes, 0, split),
+                ByteBuffer.wrap(bytes, split, bytes.length - split)));
+        Runnable feed = () -> {
+            if (!chunks.isEmpty()) {
+                parser.feed(chunks.poll());
+            } else if (!parser.ended()) {
+                parser.endOfInput();
+            } else {
+                throw new IllegalStateException("Array not ended");
+            }
+        };
+        while (parser.poll() == null) {
+            feed.run();
+        }
+        List<String> values = new ArrayList<>();
+        while (true) {
+            int b = parser.peek();
+            if (b == ']') {
+                parser.poll();
+                return values;
+            }
+            if (b < 0 || !parser.valueBuffered()) {
+                feed.run();
+                continue;
+            }
+            try {
+                values.add(new String(parser.readValue().readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.acme.json.rx;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.spi.JsonProvider;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * The output of the compiled writers replayed from their tapes must be the same as Yasson, byte for byte.
+ */
+class JsonTapeTest {
+
+    private static final Jsonb YASSON = JsonbBuilder.create();
+    private static final JsonProviderRx PROVIDER_UTF8 = JsonProviderRx.create(JsonProvider.provider(),
+            JsonProviderRx.Backend.UTF8);
+    private static final JsonMultiWriter WRITER = JsonMultiWriter.builder()
+            .provider(PROVIDER_UTF8)
+            .jsonb(JsonbBuilder.newBuilder().withProvider(PROVIDER_UTF8).build())
+            .compiled(true)
+            .build();
+
+    @Test
+    void testImmutable() {
+        assertThat(PROVIDER_UTF8.typeWriter(TestModel.Address.class).tape().immutable(), is(true));
+        assertThat(PROVIDER_UTF8.typeWriter(TestModel.Employee.class).tape().immutable(), is(false));
+        assertThat(PROVIDER_UTF8.typeWriter(TestModel.Company.class).tape().immutable(), is(false));
+    }
+
+    @Test
+    void testDeferredReplay() throws Exception {
+        // each address is queued as a single event and replayed when drained
+        List<TestModel.Address> addresses = TestModel.addresses(100);
+        assertThat(TestSubscriber.text(WRITER.array(addresses)), is(YASSON.toJson(addresses)));
+    }
+
+    @Test
+    void testDirectReplay() throws Exception {
+        TestModel.Company company = TestModel.company(50);
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .blocking(true)
+                .build()
+                .produce(out -> WRITER.toJson(company, out));
+        assertThat(TestSubscriber.text(stream), is(YASSON.toJson(company)));
+    }
+
+    @Test
+    void testMutableObject() throws Exception {
+        TestModel.Company company = TestModel.company(10);
+        String expected = YASSON.toJson(company);
+        List<TestModel.Employee> employees = new ArrayList<>(company.employees());
+        TestModel.Company mutable = new TestModel.Company(company.name(), employees, company.headquarters());
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .build()
+                .produce(out -> WRITER.toJson(mutable, out));
+        // modified before the events are drained
+        employees.clear();
+        assertThat(TestSubscriber.text(stream), is(expected));
+    }
+}
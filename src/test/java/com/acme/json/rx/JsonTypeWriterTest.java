@@ -0,0 +1,112 @@
+package com.acme.json.rx;
+
+import java.util.List;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.bind.annotation.JsonbTransient;
+import jakarta.json.spi.JsonProvider;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * The events of the compiled writers must produce the same output as Yasson, byte for byte.
+ */
+class JsonTypeWriterTest {
+
+    private static final Jsonb YASSON = JsonbBuilder.create();
+    private static final JsonProviderRx PROVIDER_RX = JsonProviderRx.create(JsonProvider.provider());
+    private static final JsonMultiWriter WRITER = JsonMultiWriter.builder()
+            .provider(PROVIDER_RX)
+            .jsonb(JsonbBuilder.newBuilder().withProvider(PROVIDER_RX).build())
+            .compiled(true)
+            .build();
+
+    @Test
+    void testRecord() throws Exception {
+        TestModel.Company company = TestModel.company(50);
+        assertThat(WRITER.typeWriter(company), is(notNullValue()));
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .build()
+                .produce(out -> WRITER.toJson(company, out));
+        assertThat(TestSubscriber.text(stream), is(YASSON.toJson(company)));
+    }
+
+    @Test
+    void testRecordBlocking() throws Exception {
+        TestModel.Company company = TestModel.company(50);
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .blocking(true)
+                .build()
+                .produce(out -> WRITER.toJson(company, out));
+        assertThat(TestSubscriber.text(stream), is(YASSON.toJson(company)));
+    }
+
+    @Test
+    void testBean() throws Exception {
+        Account account = new Account("Acme " + TestModel.TEXT, true, -42L, List.of("a", TestModel.TEXT));
+        assertThat(WRITER.typeWriter(account), is(notNullValue()));
+        JsonMultiOutputStream stream = JsonMultiOutputStream.builder()
+                .chunkSize(64)
+                .build()
+                .produce(out -> WRITER.toJson(account, out));
+        assertThat(TestSubscriber.text(stream), is(YASSON.toJson(account)));
+    }
+
+    @Test
+    void testUnsupported() {
+        assertThat(PROVIDER_RX.typeWriter(Annotated.class), is(nullValue()));
+        assertThat(PROVIDER_RX.typeWriter(Open.class), is(nullValue()));
+        assertThat(PROVIDER_RX.typeWriter(Holder.class), is(nullValue()));
+    }
+
+    public static final class Account {
+
+        private final String name;
+        private final boolean active;
+        private final Long balance;
+        private final List<String> tags;
+
+        Account(String name, boolean active, Long balance, List<String> tags) {
+            this.name = name;
+            this.active = active;
+            this.balance = balance;
+            this.tags = tags;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public Long getBalance() {
+            return balance;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+    }
+
+    public record Annotated(String name, @JsonbTransient String secret) {
+    }
+
+    public static class Open {
+
+        public String getName() {
+            return "open";
+        }
+    }
+
+    public record Holder(Object value) {
+    }
+}
@@ -0,0 +1,84 @@
+package com.acme.json.rx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entities used to compare the outputs with Yasson.
+ */
+public final class TestModel {
+
+    // escapes, control characters, 2, 3 and 4 bytes UTF-8 sequences
+    static final String TEXT = "quote \" backslash \\ slash / \b\f\n\r\t \u0001\u001f \u00e9 \u4e2d \ud83d\ude00";
+    private static final double[] SCORES = {4.5, 0.1, -3.25, 100.0, 1.0E-5, 123456.789};
+
+    private TestModel() {
+    }
+
+    /**
+     * Create a company with the given number of employees.
+     *
+     * @param size number of employees
+     * @return company
+     */
+    static Company company(int size) {
+        List<Employee> employees = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            employees.add(employee(i));
+        }
+        return new Company("Acme " + TEXT, employees, address(0));
+    }
+
+    /**
+     * Create addresses, the address is an immutable record.
+     *
+     * @param size number of addresses
+     * @return addresses
+     */
+    static List<Address> addresses(int size) {
+        List<Address> addresses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            addresses.add(address(i));
+        }
+        return addresses;
+    }
+
+    private static Employee employee(int i) {
+        return new Employee(
+                "First" + i + (i % 3 == 0 ? TEXT : ""),
+                i % 4 == 0 ? null : "Last" + i,
+                i,
+                i % 2 == 0 ? Long.MIN_VALUE + i : Long.MAX_VALUE - i,
+                SCORES[i % SCORES.length],
+                i % 2 == 0,
+                i % 3 == 0 ? null : i % 3 == 1,
+                i % 5 == 0 ? null : SCORES[(i + 1) % SCORES.length],
+                i % 2 == 0 ? null : (long) -i,
+                i % 3 == 0 ? null : Arrays.asList("tag" + i, null, TEXT),
+                i % 4 == 0 ? null : address(i));
+    }
+
+    private static Address address(int i) {
+        return new Address(i + " Main St.", i % 2 == 0 ? "Paris" : "\u6771\u4eac", i % 3 == 0 ? null : 10000 + i);
+    }
+
+    public record Company(String name, List<Employee> employees, Address headquarters) {
+    }
+
+    public record Employee(String firstName,
+                           String lastName,
+                           int age,
+                           long id,
+                           double score,
+                           boolean active,
+                           Boolean manager,
+                           Double bonus,
+                           Long badge,
+                           List<String> tags,
+                           Address address) {
+    }
+
+    public record Address(String street, String city, Integer zip) {
+    }
+}
@@ -0,0 +1,114 @@
+package com.acme.json.rx;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import io.helidon.common.http.DataChunk;
+
+/**
+ * Subscriber that collects the bytes of the chunks, the chunks are requested explicitly.
+ */
+final class TestSubscriber implements Flow.Subscriber<DataChunk> {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final CompletableFuture<byte[]> result = new CompletableFuture<>();
+    private final CompletableFuture<Flow.Subscription> subscription = new CompletableFuture<>();
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription.complete(subscription);
+    }
+
+    @Override
+    public void onNext(DataChunk chunk) {
+        synchronized (bytes) {
+            for (ByteBuffer buffer : chunk.data()) {
+                byte[] data = new byte[buffer.remaining()];
+                buffer.get(data);
+                bytes.writeBytes(data);
+            }
+        }
+        chunk.release();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (bytes) {
+            result.complete(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Subscribe to the given chunks and get the text once completed.
+     *
+     * @param chunks chunks
+     * @return text
+     * @throws Exception if the stream failed
+     */
+    static String text(Flow.Publisher<DataChunk> chunks) throws Exception {
+        TestSubscriber subscriber = new TestSubscriber();
+        chunks.subscribe(subscriber);
+        return new String(subscriber.all(), StandardCharsets.UTF_8);
+    }
+
+    void request(long n) {
+        subscription.join().request(n);
+    }
+
+    void cancel() {
+        subscription.join().cancel();
+    }
+
+    /**
+     * Get the collected bytes so far.
+     *
+     * @return bytes
+     */
+    byte[] bytes() {
+        synchronized (bytes) {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Request all the chunks and wait for the completion.
+     *
+     * @return bytes
+     * @throws Exception if the stream failed
+     */
+    byte[] all() throws Exception {
+        request(Long.MAX_VALUE);
+        return result.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Request one chunk at a time until the completion.
+     *
+     * @return text
+     * @throws Exception if the stream failed
+     */
+    String oneByOne() throws Exception {
+        while (!result.isDone()) {
+            request(1);
+        }
+        return new String(result.get(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the completion of the stream.
+     *
+     * @return future completed with the bytes, or with the error of the stream
+     */
+    CompletableFuture<byte[]> result() {
+        return result;
+    }
+}